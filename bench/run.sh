@@ -0,0 +1,14 @@
+#!/bin/sh
+# Run benchmark of scmp package at JVM (without Android).
+#   usage : bench/run.sh [<benchmark name>]
+# 'free.yhc.netmbuddy.utils.Utils' of app is replaced with JVM-only one at 'bench/src'.
+set -e
+BENCHDIR=$(cd $(dirname $0) && pwd)
+SRCDIR=$BENCHDIR/../src
+OUTDIR=${TMPDIR:-/tmp}/netmbuddy-bench
+rm -rf $OUTDIR
+mkdir -p $OUTDIR
+javac -encoding UTF-8 -nowarn -d $OUTDIR \
+    $(find $BENCHDIR/src -name '*.java') \
+    $SRCDIR/free/yhc/netmbuddy/scmp/*.java
+java -cp $OUTDIR free.yhc.netmbuddy.scmp.SCmpBench $BENCHDIR/corpus/titles.txt "$@"
@@ -0,0 +1,424 @@
+/*****************************************************************************
+ *    Copyright (C) 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.scmp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+// Benchmark of scmp package at JVM (without Android).
+// See 'bench/run.sh'.
+//
+// Each benchmark compares pairs of titles of one corpus repeatedly.
+// Pairs are half 'edited copy of base title' (similar) and half random (usually not similar),
+//   because both of them are common at similar-titles-search.
+//
+// 'similarity(s)' and 'exceeds(s, th)' include setting base string.
+//
+// Before measuring, outputs of DP engine are checked against DNLoop - the original engine -
+//   for all title pairs (within token limit of DNLoop) of all corpora.
+// Benchmark fails (exit status 1) if any of them differs - even by rounding error.
+//
+// Reported values
+//   ops/s     : comparisons per second.
+//   avg/p99/max : latency of one comparison in micro-seconds.
+//   B/op      : allocated bytes per comparison (-1 if JVM doesn't support measuring it).
+//   MB/s      : allocation rate.
+public class SCmpBench {
+    private static final long   WARMUP_MS       = 1000;
+    private static final long   MEASURE_MS      = 3000;
+    private static final int    NR_PAIRS        = 1000;
+    private static final int    MAX_SAMPLES     = 1 << 20;
+    // Same limit with DNLoop benchmarks.
+    private static final int    DNLOOP_MAX_TOKENS   = 8;
+    private static final float[] sThresholds    = { 0.1f, 0.4f, 0.7f };
+
+    private static final String[] sEnWords = {
+        "love", "you", "me", "live", "official", "video", "music", "lyrics", "remix", "cover",
+        "piano", "night", "day", "heart", "baby", "dance", "song", "world", "dream", "rain",
+        "summer", "winter", "girl", "boy", "fire", "light", "sky", "star", "road", "home",
+    };
+
+    private static final String[] sKoWords = {
+        "사랑", "너", "나", "라이브", "뮤직비디오", "가사", "피아노", "밤", "하루", "마음",
+        "노래", "세상", "꿈", "비", "여름", "겨울", "소녀", "소년", "불꽃", "하늘",
+    };
+
+    private static final String[] sRepWords = { "la", "na", "love", "oh", "baby" };
+
+    private static final String[] sDelimiters = { " ", " - ", " (", ") ", " [", "] ", ", ", " / " };
+
+    private interface Op {
+        float run(String s0, String s1);
+    }
+
+    private static class Corpus {
+        final String    name;
+        final String[]  s0;
+        final String[]  s1;
+
+        Corpus(String aName, String[] aS0, String[] aS1) {
+            name = aName;
+            s0 = aS0;
+            s1 = aS1;
+        }
+    }
+
+    private static class Bench {
+        final String    name;
+        final Op        op;
+        // Engine like DNLoop is too slow for long titles.
+        final int       maxTokens;
+
+        Bench(String aName, int aMaxTokens, Op aOp) {
+            name = aName;
+            maxTokens = aMaxTokens;
+            op = aOp;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Corpus
+    // ------------------------------------------------------------------------
+    private static String
+    makeTitle(Random r, String[][] vocas, int nrWords) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < nrWords; i++) {
+            if (i > 0)
+                sb.append(sDelimiters[r.nextInt(sDelimiters.length)]);
+            String[] voca = vocas[r.nextInt(vocas.length)];
+            String w = voca[r.nextInt(voca.length)];
+            if (r.nextInt(4) == 0)
+                w = w.toUpperCase();
+            sb.append(w);
+        }
+        return sb.toString();
+    }
+
+    // Drop, swap and add some words of given title.
+    private static String
+    editTitle(Random r, String title) {
+        ArrayList<String> toks = new ArrayList<String>(Arrays.asList(SCmp.tokenize(title)));
+        if (toks.size() > 2 && r.nextBoolean())
+            toks.remove(r.nextInt(toks.size()));
+        if (toks.size() > 1 && r.nextBoolean()) {
+            int i = r.nextInt(toks.size() - 1);
+            toks.add(i, toks.remove(i + 1));
+        }
+        if (r.nextBoolean())
+            toks.add(r.nextInt(toks.size() + 1), "official");
+        StringBuilder sb = new StringBuilder();
+        for (String t : toks)
+            sb.append(t).append(' ');
+        return sb.toString();
+    }
+
+    private static Corpus
+    makeCorpus(String name, long seed, String[][] vocas, int minWords, int maxWords) {
+        Random r = new Random(seed);
+        String[] s0 = new String[NR_PAIRS];
+        String[] s1 = new String[NR_PAIRS];
+        for (int i = 0; i < NR_PAIRS; i++) {
+            s0[i] = makeTitle(r, vocas, minWords + r.nextInt(maxWords - minWords + 1));
+            s1[i] = r.nextBoolean()
+                    ? editTitle(r, s0[i])
+                    : makeTitle(r, vocas, minWords + r.nextInt(maxWords - minWords + 1));
+        }
+        return new Corpus(name, s0, s1);
+    }
+
+    private static Corpus
+    loadCorpus(String name, File f) throws IOException {
+        ArrayList<String> titles = new ArrayList<String>();
+        BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"));
+        try {
+            String ln;
+            while (null != (ln = br.readLine())) {
+                ln = ln.trim();
+                if (!ln.isEmpty() && !ln.startsWith("#"))
+                    titles.add(ln);
+            }
+        } finally {
+            br.close();
+        }
+        // All pairs of titles.
+        int n = titles.size();
+        String[] s0 = new String[n * n];
+        String[] s1 = new String[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                s0[i * n + j] = titles.get(i);
+                s1[i * n + j] = titles.get(j);
+            }
+        }
+        return new Corpus(name, s0, s1);
+    }
+
+    private static Corpus
+    filterCorpus(Corpus c, int maxTokens) {
+        ArrayList<String> s0 = new ArrayList<String>();
+        ArrayList<String> s1 = new ArrayList<String>();
+        for (int i = 0; i < c.s0.length; i++) {
+            if (SCmp.tokenize(c.s0[i]).length <= maxTokens
+                && SCmp.tokenize(c.s1[i]).length <= maxTokens) {
+                s0.add(c.s0[i]);
+                s1.add(c.s1[i]);
+            }
+        }
+        return new Corpus(c.name,
+                          s0.toArray(new String[s0.size()]),
+                          s1.toArray(new String[s1.size()]));
+    }
+
+    // ------------------------------------------------------------------------
+    // Measure
+    // ------------------------------------------------------------------------
+    private static long
+    allocatedBytes(ThreadMXBean tmx) {
+        if (tmx instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean)tmx).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    private static float
+    runFor(Op op, Corpus c, long ms) {
+        float sink = 0;
+        long end = System.nanoTime() + ms * 1000000L;
+        int i = 0;
+        while (System.nanoTime() < end) {
+            sink += op.run(c.s0[i], c.s1[i]);
+            if (++i >= c.s0.length)
+                i = 0;
+        }
+        return sink;
+    }
+
+    private static float
+    measure(Bench b, Corpus c) {
+        if (0 == c.s0.length) {
+            System.out.printf("%-26s %-12s (no title pair within %d tokens)%n", b.name, c.name, b.maxTokens);
+            return 0;
+        }
+
+        ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+        float sink = runFor(b.op, c, WARMUP_MS);
+
+        long[] samples = new long[MAX_SAMPLES];
+        int nrSamples = 0;
+        long nrOps = 0;
+        long maxNs = 0;
+        long alloc0 = allocatedBytes(tmx);
+        long start = System.nanoTime();
+        long end = start + MEASURE_MS * 1000000L;
+        long now = start;
+        int i = 0;
+        while (now < end) {
+            long t0 = now;
+            sink += b.op.run(c.s0[i], c.s1[i]);
+            now = System.nanoTime();
+            long dt = now - t0;
+            if (dt > maxNs)
+                maxNs = dt;
+            if (nrSamples < samples.length)
+                samples[nrSamples++] = dt;
+            nrOps++;
+            if (++i >= c.s0.length)
+                i = 0;
+        }
+        long elapsed = now - start;
+        long alloc1 = allocatedBytes(tmx);
+
+        Arrays.sort(samples, 0, nrSamples);
+        long p99 = samples[Math.min(nrSamples - 1, (int)(nrSamples * 0.99))];
+        double opsPerSec = nrOps * 1e9 / elapsed;
+        double bytesPerOp = (alloc0 < 0)? -1: (double)(alloc1 - alloc0) / nrOps;
+        double mbPerSec = (alloc0 < 0)? -1: (alloc1 - alloc0) * 1e9 / elapsed / (1024 * 1024);
+        System.out.printf("%-26s %-12s %12.0f %10.2f %10.2f %10.2f %10.0f %10.1f%n",
+                          b.name, c.name,
+                          opsPerSec,
+                          elapsed / 1e3 / nrOps, p99 / 1e3, maxNs / 1e3,
+                          bytesPerOp, mbPerSec);
+        return sink;
+    }
+
+    // ------------------------------------------------------------------------
+    // Main
+    // ------------------------------------------------------------------------
+    private static final SCmpPolicy sDp = new SCmpPolicy(SCmpPolicy.DEF_ORDER_COEFF,
+                                                         SCmpPolicy.DEF_CONT_ADV,
+                                                         SCmpPolicy.DEF_SCMP_THRESHOLD,
+                                                         SCmpPolicy.Engine.DP);
+    private static final SCmpPolicy sDnloop = new SCmpPolicy(SCmpPolicy.DEF_ORDER_COEFF,
+                                                             SCmpPolicy.DEF_CONT_ADV,
+                                                             SCmpPolicy.DEF_SCMP_THRESHOLD,
+                                                             SCmpPolicy.Engine.DNLOOP);
+
+    // ------------------------------------------------------------------------
+    // Verify
+    // ------------------------------------------------------------------------
+    private static int
+    reportMismatch(int nrMismatch, String what, Corpus c, int i, Object dnloopv, Object dpv) {
+        // Too many lines are useless.
+        if (nrMismatch < 10)
+            System.out.printf("MISMATCH %s %s [%s] [%s] : DNLoop=%s, DP=%s%n",
+                              what, c.name, c.s0[i], c.s1[i], dnloopv, dpv);
+        return nrMismatch + 1;
+    }
+
+    /**
+     * Compare outputs of DP engine with DNLoop engine.
+     * @return
+     *   number of title pairs whose outputs differ.
+     */
+    private static int
+    verify(Corpus c) {
+        SCmp scmp = new SCmp();
+        SCmp scmpDnloop = new SCmp();
+        int nrMismatch = 0;
+        for (int i = 0; i < c.s0.length; i++) {
+            scmp.setCmpParameter(c.s0[i], true, sDp);
+            scmpDnloop.setCmpParameter(c.s0[i], true, sDnloop);
+            float dnloopv = scmpDnloop.similarity(c.s1[i]);
+            float dpv = scmp.similarity(c.s1[i]);
+            if (0 != Float.compare(dnloopv, dpv)) {
+                nrMismatch = reportMismatch(nrMismatch, "similarity(s)", c, i, dnloopv, dpv);
+                continue;
+            }
+
+            dnloopv = SCmp.similarity(c.s0[i], c.s1[i], false, sDnloop);
+            dpv = SCmp.similarity(c.s0[i], c.s1[i], false, sDp);
+            if (0 != Float.compare(dnloopv, dpv)) {
+                nrMismatch = reportMismatch(nrMismatch, "similarity(s0, s1)", c, i, dnloopv, dpv);
+                continue;
+            }
+
+            for (float th : sThresholds) {
+                boolean dnloopb = scmpDnloop.exceeds(c.s1[i], th);
+                boolean dpb = scmp.exceeds(c.s1[i], th);
+                if (dnloopb != dpb) {
+                    nrMismatch = reportMismatch(nrMismatch, "exceeds(s, " + th + ")", c, i, dnloopb, dpb);
+                    break;
+                }
+            }
+        }
+        return nrMismatch;
+    }
+
+    private static Bench[]
+    benches() {
+        final SCmpPolicy dp = sDp;
+        final SCmpPolicy dnloop = sDnloop;
+        final SCmp scmp = new SCmp();
+        final SCmp scmpDnloop = new SCmp();
+        return new Bench[] {
+            new Bench("similarity(s)", Integer.MAX_VALUE, new Op() {
+                @Override
+                public float
+                run(String s0, String s1) {
+                    scmp.setCmpParameter(s0, true, dp);
+                    return scmp.similarity(s1);
+                }
+            }),
+            new Bench("exceeds(s, 0.1)", Integer.MAX_VALUE, new Op() {
+                @Override
+                public float
+                run(String s0, String s1) {
+                    scmp.setCmpParameter(s0, true, dp);
+                    return scmp.exceeds(s1, 0.1f)? 1: 0;
+                }
+            }),
+            new Bench("similarity(s0, s1)", Integer.MAX_VALUE, new Op() {
+                @Override
+                public float
+                run(String s0, String s1) {
+                    return SCmp.similarity(s0, s1, false, dp);
+                }
+            }),
+            // Original implementation : SCElemSStr + DNLoop.
+            new Bench("similarity(s) DNLoop", DNLOOP_MAX_TOKENS, new Op() {
+                @Override
+                public float
+                run(String s0, String s1) {
+                    scmpDnloop.setCmpParameter(s0, true, dnloop);
+                    return scmpDnloop.similarity(s1);
+                }
+            }),
+            new Bench("similarity(s0, s1) DNLoop", DNLOOP_MAX_TOKENS, new Op() {
+                @Override
+                public float
+                run(String s0, String s1) {
+                    return SCmp.similarity(s0, s1, false, dnloop);
+                }
+            }),
+        };
+    }
+
+    /**
+     * @param args
+     *   [0] (optional) : path of real title corpus. One title per line.
+     *   [1] (optional) : name of benchmark to run. All benchmarks are run if omitted.
+     */
+    public static void
+    main(String[] args) throws IOException {
+        String[][] en = new String[][] { sEnWords };
+        ArrayList<Corpus> corpora = new ArrayList<Corpus>();
+        corpora.add(makeCorpus("short", 1, en, 1, 4));
+        corpora.add(makeCorpus("long", 2, en, 12, 24));
+        corpora.add(makeCorpus("repetitive", 3, new String[][] { sRepWords }, 4, 12));
+        corpora.add(makeCorpus("mixed", 4, new String[][] { sEnWords, sKoWords }, 2, 8));
+        if (args.length > 0)
+            corpora.add(loadCorpus("real", new File(args[0])));
+
+        int nrPairs = 0;
+        int nrMismatch = 0;
+        for (Corpus c : corpora) {
+            Corpus fc = filterCorpus(c, DNLOOP_MAX_TOKENS);
+            nrPairs += fc.s0.length;
+            nrMismatch += verify(fc);
+        }
+        if (nrMismatch > 0) {
+            System.out.println("FAIL : outputs of DP and DNLoop differ at "
+                               + nrMismatch + " of " + nrPairs + " title pairs.");
+            System.exit(1);
+        }
+        System.out.println("Outputs of DP and DNLoop are same at " + nrPairs + " title pairs.");
+
+        System.out.printf("%-26s %-12s %12s %10s %10s %10s %10s %10s%n",
+                          "benchmark", "corpus", "ops/s", "avg(us)", "p99(us)", "max(us)", "B/op", "MB/s");
+        float sink = 0;
+        for (Bench b : benches()) {
+            if (args.length > 1 && !b.name.equals(args[1]))
+                continue;
+            for (Corpus c : corpora)
+                sink += measure(b, (Integer.MAX_VALUE == b.maxTokens)? c: filterCorpus(c, b.maxTokens));
+        }
+        // To prevent JIT from removing benchmark codes.
+        if (Float.isNaN(sink))
+            System.out.println("NaN");
+    }
+}
@@ -0,0 +1,52 @@
+/*****************************************************************************
+ *    Copyright (C) 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.utils;
+
+// JVM-only replacement of 'free.yhc.netmbuddy.utils.Utils' for benchmark.
+// Only functions used by 'free.yhc.netmbuddy.scmp' are here.
+// Keep it in sync when scmp package starts to use other functions of Utils.
+public class Utils {
+    public static class Logger {
+        private final String _mTag;
+
+        public Logger(Class<?> cls) {
+            _mTag = cls.getSimpleName();
+        }
+
+        public void v(String msg) { System.out.println("[V] " + _mTag + " : " + msg); }
+        public void d(String msg) { System.out.println("[D] " + _mTag + " : " + msg); }
+        public void i(String msg) { System.out.println("[I] " + _mTag + " : " + msg); }
+        public void w(String msg) { System.out.println("[W] " + _mTag + " : " + msg); }
+        public void e(String msg) { System.out.println("[E] " + _mTag + " : " + msg); }
+        public void f(String msg) { System.out.println("[F] " + _mTag + " : " + msg); }
+    }
+
+    public static void
+    eAssert(boolean cond) {
+        if (!cond)
+            throw new AssertionError();
+    }
+
+    public static float
+    max(float f0, float f1) {
+        return (f0 < f1)? f1: f0;
+    }
+}
@@ -487,6 +487,7 @@ UnexpectedExceptionHandler.Evidence {
                                                   new MusicsAdapter.CursorArg(mPlid, searchWord),
                                                   mCheckListener);
         mListv.setAdapter(adapter);
+        mListv.setRecyclerListener(adapter);
         adapter.reloadCursorAsync();
     }
 
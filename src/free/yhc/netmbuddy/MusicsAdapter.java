@@ -27,6 +27,7 @@ import java.util.HashMap;
 import android.content.Context;
 import android.database.Cursor;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.CheckBox;
 import android.widget.CompoundButton;
 import android.widget.ImageView;
@@ -35,10 +36,12 @@ import android.widget.TextView;
 import free.yhc.netmbuddy.db.ColVideo;
 import free.yhc.netmbuddy.db.DB;
 import free.yhc.netmbuddy.model.YTPlayer;
+import free.yhc.netmbuddy.utils.ThumbnailLoader;
 import free.yhc.netmbuddy.utils.UiUtils;
 import free.yhc.netmbuddy.utils.Utils;
 
-public class MusicsAdapter extends ResourceCursorAdapter {
+public class MusicsAdapter extends ResourceCursorAdapter implements
+AbsListView.RecyclerListener {
     private static final boolean DBG = false;
     private static final Utils.Logger P = new Utils.Logger(MusicsAdapter.class);
 
@@ -130,9 +133,9 @@ public class MusicsAdapter extends ResourceCursorAdapter {
         if (UiUtils.PLID_RECENT_PLAYED == mCurArg.plid)
             return DB.get().queryVideos(sQueryCols, ColVideo.TIME_PLAYED, false);
         else if (UiUtils.PLID_SEARCHED == mCurArg.plid)
-            return DB.get().queryVideosSearchTitle(sQueryCols, mCurArg.extra.split("\\s"));
+            return DB.get().queryVideosSearch(sQueryCols, mCurArg.extra);
         else
-            return DB.get().queryVideos(mCurArg.plid, sQueryCols, ColVideo.TITLE, true);
+            return DB.get().queryVideosPaged(mCurArg.plid, sQueryCols);
     }
 
     public MusicsAdapter(Context context,
@@ -165,7 +168,7 @@ public class MusicsAdapter extends ResourceCursorAdapter {
         Cursor c = getCursor();
         if (!c.moveToPosition(pos))
             eAssert(false);
-        return (byte[])DB.get().getVideoInfo(c.getString(COLI_VIDEOID), ColVideo.THUMBNAIL);
+        return DB.get().getVideoThumbnail(c.getLong(COLI_ID));
     }
 
     public int
@@ -233,6 +236,9 @@ public class MusicsAdapter extends ResourceCursorAdapter {
             @Override
             public Err
             doBackgroundWork(DiagAsyncTask task) {
+                // Recently played videos are sorted by time played that may not be in DB yet.
+                if (UiUtils.PLID_RECENT_PLAYED == mCurArg.plid)
+                    DB.get().flushPendingWrites();
                 newCursor = createCursor();
                 // NOTE
                 // First-call of'getCount()', can make 'Cursor' cache lots of internal information.
@@ -251,6 +257,13 @@ public class MusicsAdapter extends ResourceCursorAdapter {
             .run();
     }
 
+    @Override
+    public void
+    onMovedToScrapHeap(View v) {
+        // Item is out of screen. Thumbnail is not needed anymore.
+        ThumbnailLoader.get().cancel((ImageView)v.findViewById(R.id.thumbnail));
+    }
+
     @Override
     public void
     bindView(View v, Context context, Cursor cur) {
@@ -279,7 +292,6 @@ public class MusicsAdapter extends ResourceCursorAdapter {
             authorv.setVisibility(View.GONE);
         uploadtmv.setVisibility(View.GONE);
         playtmv.setText(Utils.secsToMinSecText(cur.getInt(COLI_PLAYTIME)));
-        byte[] thumbnailData = (byte[])DB.get().getVideoInfo(cur.getString(COLI_VIDEOID), ColVideo.THUMBNAIL);
-        UiUtils.setThumbnailImageView(thumbnailv, thumbnailData);
+        ThumbnailLoader.get().loadVideoThumbnail(thumbnailv, cur.getLong(COLI_ID));
     }
 }
@@ -30,6 +30,7 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.SearchManager;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.res.Configuration;
 import android.database.Cursor;
 import android.graphics.Typeface;
@@ -50,12 +51,14 @@ import free.yhc.netmbuddy.PlaylistAdapter.ItemButton;
 import free.yhc.netmbuddy.db.ColPlaylist;
 import free.yhc.netmbuddy.db.ColVideo;
 import free.yhc.netmbuddy.db.DB;
+import free.yhc.netmbuddy.db.DBChangeLog;
 import free.yhc.netmbuddy.model.Policy;
 import free.yhc.netmbuddy.model.SearchSuggestionProvider;
 import free.yhc.netmbuddy.model.UnexpectedExceptionHandler;
 import free.yhc.netmbuddy.model.YTPlayer;
 import free.yhc.netmbuddy.share.Share;
 import free.yhc.netmbuddy.utils.ReportUtils;
+import free.yhc.netmbuddy.utils.ThumbnailLoader;
 import free.yhc.netmbuddy.utils.UiUtils;
 import free.yhc.netmbuddy.utils.Utils;
 
@@ -79,6 +82,9 @@ UnexpectedExceptionHandler.Evidence {
     private final DB            mDb = DB.get();
     private final YTPlayer      mMp = YTPlayer.get();
 
+    // Version of playlist table seen at last 'onPause()'. -1 if not paused yet.
+    private long                mPlTblVersion = -1;
+
     private final OnPlayerUpdateDBListener mOnPlayerUpdateDbListener
         = new OnPlayerUpdateDBListener();
 
@@ -165,19 +171,19 @@ UnexpectedExceptionHandler.Evidence {
                     return Err.NO_ERR;
                 }
 
-                mDb.beginTransaction();
-                try {
-                    do {
-                        switch (mDb.insertVideoToPlaylist(dstPlid, c.getLong(0))) {
-                        case NO_ERR:        _mSCnt++;   break;
-                        case DUPLICATED:    _mDupCnt++; break;
-                        default:            _mFCnt++;
-                        }
-                    } while (c.moveToNext());
-                    mDb.setTransactionSuccessful();
-                } finally {
-                    mDb.endTransaction();
-                    c.close();
+                long[] vids = new long[c.getCount()];
+                int i = 0;
+                do {
+                    vids[i++] = c.getLong(0);
+                } while (c.moveToNext());
+                c.close();
+
+                for (DB.Err err : mDb.insertVideosToPlaylist(dstPlid, vids)) {
+                    switch (err) {
+                    case NO_ERR:        _mSCnt++;   break;
+                    case DUPLICATED:    _mDupCnt++; break;
+                    default:            _mFCnt++;
+                    }
                 }
                 return Err.NO_ERR;
             }
@@ -218,9 +224,16 @@ UnexpectedExceptionHandler.Evidence {
             run() {
                 // NOTE & IMPORTANT
                 // Stop/Pause all operations that might use DB before changing and reloading DB.
-                // At this moment, playing video is only operation accessing DB
-                // (Updating playtime)
+                // DB is closed and opened again by all callers (import, merge, export, backup and restore).
+                // At this moment, operations accessing DB at background are
+                //   - playing video (Updating time played)
+                //   - loading thumbnails of list items
+                //   - flushing pending writes of player (See DB.flushPendingWrites())
                 YTPlayer.get().stopVideos();
+                ThumbnailLoader.get().pause();
+                // Stopping player may request flushing. Pending writes are flushed when DB is closed.
+                // Flushing thread already started is serialized with closing DB. See DB.close().
+                mDb.cancelFlushPendingWrites();
                 synchronized (uiWait) {
                     uiWait.notifyAll();
                 }
@@ -241,30 +254,70 @@ UnexpectedExceptionHandler.Evidence {
         } catch (InterruptedException e) { }
     }
 
+    // Resume operations paused by 'stopDbAccess()'.
+    private void
+    resumeDbAccess() {
+        Utils.getUiHandler().post(new Runnable() {
+            @Override
+            public void
+            run() {
+                ThumbnailLoader.get().resume();
+            }
+        });
+    }
+
     private Err
     importDbInBackground(File exDbf) {
         stopDbAccess();
-
-        // Let's do real-import.
-        return Err.map(mDb.importDatabase(exDbf));
+        try {
+            // Let's do real-import.
+            return Err.map(mDb.importDatabase(exDbf));
+        } finally {
+            resumeDbAccess();
+        }
     }
 
     private Err
     mergeDbInBackground(File exDbf) {
-        // Actually, in case of merging DB, we don't need to stop DB access.
-        // But, just in case...
+        // DB is closed and opened again during merging. See DBManager.mergeDatabase().
         stopDbAccess();
-
-        return Err.map(mDb.mergeDatabase(exDbf));
+        try {
+            return Err.map(mDb.mergeDatabase(exDbf));
+        } finally {
+            resumeDbAccess();
+        }
     }
 
     private Err
     exportDbInBackground(File exDbf) {
         stopDbAccess();
+        try {
+            // Make directories.
+            new File(exDbf.getAbsoluteFile().getParent()).mkdirs();
+            return Err.map(mDb.exportDatabase(exDbf));
+        } finally {
+            resumeDbAccess();
+        }
+    }
+
+    private Err
+    backupDbInBackground(File dir) {
+        stopDbAccess();
+        try {
+            return Err.map(mDb.backupDatabase(dir));
+        } finally {
+            resumeDbAccess();
+        }
+    }
 
-        // Make directories.
-        new File(exDbf.getAbsoluteFile().getParent()).mkdirs();
-        return Err.map(mDb.exportDatabase(exDbf));
+    private Err
+    restoreDbInBackground(File dir) {
+        stopDbAccess();
+        try {
+            return Err.map(mDb.restoreDatabase(dir));
+        } finally {
+            resumeDbAccess();
+        }
     }
 
     // ------------------------------------------------------------------------
@@ -435,12 +488,130 @@ UnexpectedExceptionHandler.Evidence {
         }).show();
     }
 
+    private void
+    onMenuMoreDbBackup(View anchor) {
+        final File dir = new File(Policy.APPDATA_BACKUPDIR);
+        CharSequence title = getResources().getText(R.string.backup);
+        CharSequence msg = getResources().getText(R.string.database) + " => " + dir.getAbsolutePath();
+        UiUtils.buildConfirmDialog(this, title, msg, new UiUtils.ConfirmAction() {
+            @Override
+            public void
+            onOk(Dialog dialog) {
+                DiagAsyncTask.Worker worker = new DiagAsyncTask.Worker() {
+                    @Override
+                    public void
+                    onPostExecute(DiagAsyncTask task, Err result) {
+                        if (Err.NO_ERR != result)
+                            UiUtils.showTextToast(PlaylistActivity.this, result.getMessage());
+                    }
+
+                    @Override
+                    public Err
+                    doBackgroundWork(DiagAsyncTask task) {
+                        return backupDbInBackground(dir);
+                    }
+                };
+                new DiagAsyncTask(PlaylistActivity.this,
+                                  worker,
+                                  DiagAsyncTask.Style.SPIN,
+                                  R.string.backing_up_db)
+                    .run();
+            }
+
+            @Override
+            public void
+            onCancel(Dialog dialog) { }
+        }).show();
+    }
+
+    private void
+    onMenuMoreDbRestore(View anchor) {
+        final File dir = new File(Policy.APPDATA_BACKUPDIR);
+        CharSequence title = getResources().getText(R.string.restore);
+        CharSequence msg = getResources().getText(R.string.database) + " <= " + dir.getAbsolutePath();
+        UiUtils.buildConfirmDialog(this, title, msg, new UiUtils.ConfirmAction() {
+            @Override
+            public void
+            onOk(Dialog dialog) {
+                if (!dir.canRead()) {
+                    UiUtils.showTextToast(PlaylistActivity.this, R.string.msg_fail_access_exdb);
+                    return;
+                }
+
+                DiagAsyncTask.Worker worker = new DiagAsyncTask.Worker() {
+                    @Override
+                    public void
+                    onPostExecute(DiagAsyncTask task, Err result) {
+                        if (Err.NO_ERR == result)
+                            getAdapter().reloadCursorAsync();
+                        else
+                            UiUtils.showTextToast(PlaylistActivity.this, result.getMessage());
+                    }
+
+                    @Override
+                    public Err
+                    doBackgroundWork(DiagAsyncTask task) {
+                        return restoreDbInBackground(dir);
+                    }
+                };
+                new DiagAsyncTask(PlaylistActivity.this,
+                                  worker,
+                                  DiagAsyncTask.Style.SPIN,
+                                  R.string.restoring_db)
+                    .run();
+            }
+
+            @Override
+            public void
+            onCancel(Dialog dialog) { }
+        }).show();
+    }
+
+    private void
+    onMenuMoreDbCheckQueryPlans(View anchor) {
+        final int[] nrBad = new int[] { 0 };
+        DiagAsyncTask.Worker worker = new DiagAsyncTask.Worker() {
+            @Override
+            public void
+            onPostExecute(DiagAsyncTask task, Err result) {
+                // Details are at log.
+                UiUtils.showTextToast(PlaylistActivity.this,
+                                      getResources().getString(R.string.msg_full_scan_queries, nrBad[0]));
+            }
+
+            @Override
+            public Err
+            doBackgroundWork(DiagAsyncTask task) {
+                nrBad[0] = mDb.checkQueryPlans();
+                return Err.NO_ERR;
+            }
+        };
+        new DiagAsyncTask(this,
+                          worker,
+                          DiagAsyncTask.Style.SPIN,
+                          R.string.checking_query_plans)
+            .run();
+    }
+
     private void
     onMenuMoreDB(final View anchor) {
-        final int[] menus = {
-                R.string.export,
-                R.string.import_,
-                R.string.merge };
+        // Checking query plans is only for developers.
+        final int[] menus = (0 != (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE))?
+                new int[] {
+                    R.string.export,
+                    R.string.import_,
+                    R.string.merge,
+                    R.string.backup,
+                    R.string.restore,
+                    R.string.find_duplicated_titles,
+                    R.string.check_query_plans }:
+                new int[] {
+                    R.string.export,
+                    R.string.import_,
+                    R.string.merge,
+                    R.string.backup,
+                    R.string.restore,
+                    R.string.find_duplicated_titles };
 
         UiUtils.OnMenuSelected action = new UiUtils.OnMenuSelected() {
             @Override
@@ -459,6 +630,22 @@ UnexpectedExceptionHandler.Evidence {
                     onMenuMoreDbMerge(anchor);
                     break;
 
+                case R.string.backup:
+                    onMenuMoreDbBackup(anchor);
+                    break;
+
+                case R.string.restore:
+                    onMenuMoreDbRestore(anchor);
+                    break;
+
+                case R.string.find_duplicated_titles:
+                    UiUtils.showDuplicatedTitlesDialog(PlaylistActivity.this);
+                    break;
+
+                case R.string.check_query_plans:
+                    onMenuMoreDbCheckQueryPlans(anchor);
+                    break;
+
                 default:
                     eAssert(false);
                 }
@@ -899,6 +1086,7 @@ UnexpectedExceptionHandler.Evidence {
             }
         });
         mListv.setAdapter(adapter);
+        mListv.setRecyclerListener(adapter);
         mListv.setEmptyView(findViewById(R.id.empty_list));
         adapter.reloadCursorAsync();
 
@@ -935,10 +1123,11 @@ UnexpectedExceptionHandler.Evidence {
         else
             playerv.setVisibility(View.GONE);
 
-        if (mDb.isRegisteredToPlaylistTableWatcher(this)) {
-            if (mDb.isPlaylistTableUpdated(this))
+        if (mPlTblVersion >= 0) {
+            DBChangeLog.Change[] cs = mDb.getPlaylistTableChangeLog().since(mPlTblVersion);
+            if (null == cs || cs.length > 0)
                 getAdapter().reloadCursorAsync();
-            mDb.unregisterToPlaylistTableWatcher(this);
+            mPlTblVersion = -1;
         }
     }
 
@@ -947,7 +1136,7 @@ UnexpectedExceptionHandler.Evidence {
     onPause() {
         mMp.removeOnDbUpdatedListener(this);
         mMp.unsetController(this);
-        mDb.registerToPlaylistTableWatcher(this);
+        mPlTblVersion = mDb.getPlaylistTableChangeLog().version();
         super.onPause();
     }
 
@@ -960,7 +1149,6 @@ UnexpectedExceptionHandler.Evidence {
     @Override
     protected void
     onDestroy() {
-        mDb.unregisterToPlaylistTableWatcher(this);
         UnexpectedExceptionHandler.get().unregisterModule(this);
         super.onDestroy();
     }
@@ -24,15 +24,17 @@ import static free.yhc.netmbuddy.utils.Utils.eAssert;
 import android.content.Context;
 import android.database.Cursor;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.ImageView;
 import android.widget.ResourceCursorAdapter;
 import android.widget.TextView;
 import free.yhc.netmbuddy.db.ColPlaylist;
 import free.yhc.netmbuddy.db.DB;
-import free.yhc.netmbuddy.utils.UiUtils;
+import free.yhc.netmbuddy.utils.ThumbnailLoader;
 import free.yhc.netmbuddy.utils.Utils;
 
-public class PlaylistAdapter extends ResourceCursorAdapter {
+public class PlaylistAdapter extends ResourceCursorAdapter implements
+AbsListView.RecyclerListener {
     private static final boolean DBG = false;
     private static final Utils.Logger P = new Utils.Logger(PlaylistAdapter.class);
 
@@ -124,6 +126,13 @@ public class PlaylistAdapter extends ResourceCursorAdapter {
         return null;
     }
 
+    @Override
+    public void
+    onMovedToScrapHeap(View view) {
+        // Item is out of screen. Thumbnail is not needed anymore.
+        ThumbnailLoader.get().cancel((ImageView)view.findViewById(R.id.thumbnail));
+    }
+
     @Override
     public void
     bindView(View view, Context context, Cursor cur) {
@@ -136,7 +145,6 @@ public class PlaylistAdapter extends ResourceCursorAdapter {
 
         titlev.setText(cur.getString(COLI_TITLE));
         nritemsv.setText(cur.getLong(COLI_SIZE) + "");
-        byte[] thumbnailData = (byte[])DB.get().getPlaylistInfo(cur.getLong(COLI_ID), ColPlaylist.THUMBNAIL);
-        UiUtils.setThumbnailImageView(thumbnailv, thumbnailData);
+        ThumbnailLoader.get().loadPlaylistThumbnail(thumbnailv, cur.getLong(COLI_ID));
     }
 }
@@ -82,21 +82,25 @@ UnexpectedExceptionHandler.Evidence {
             throw new InterruptedException();
     }
 
-    private boolean
-    insertVideoToPlaylist(long plid, YTVideoFeed.Entry e) {
+    /**
+     * @return
+     *   null if fails.
+     */
+    private DB.InsertVideoArg
+    loadInsertVideoArg(YTVideoFeed.Entry e) {
         int playtm = 0;
         try {
              playtm = Integer.parseInt(e.media.playTime);
         } catch (NumberFormatException ex) {
-            return false;
+            return null;
         }
 
-        return YTUtils.insertVideoToPlaylist(plid,
-                                             e.media.videoId,
-                                             e.media.title,
-                                             e.author.name,
-                                             playtm,
-                                             Policy.DEFAULT_VIDEO_VOLUME);
+        return YTUtils.loadInsertVideoArg(e.media.videoId,
+                                          e.media.title,
+                                          e.author.name,
+                                          playtm,
+                                          Policy.DEFAULT_VIDEO_VOLUME,
+                                          "");
     }
 
     private Err
@@ -147,11 +151,15 @@ UnexpectedExceptionHandler.Evidence {
             }
 
             YTVideoFeed.Entry[] ents = (YTVideoFeed.Entry[])sr.r.entries;
-            for (YTVideoFeed.Entry e : ents) {
-                // Check that this video is in DB or not.
-                // And add video only that is missed at selected local playlist
-                if (!db.containsVideo(plid, e.media.videoId))
-                    map.put(e.media.videoId, e);
+            String[] ytvids = new String[ents.length];
+            for (int i = 0; i < ents.length; i++)
+                ytvids[i] = ents[i].media.videoId;
+            // Check that this video is in DB or not.
+            // And add video only that is missed at selected local playlist
+            boolean[] contained = db.containsVideos(plid, ytvids);
+            for (int i = 0; i < ents.length; i++) {
+                if (!contained[i])
+                    map.put(ents[i].media.videoId, ents[i]);
             }
 
             int curPv = pvBase + (curPage * 100 / maxPage) * pvPortion / 100;
@@ -179,6 +187,9 @@ UnexpectedExceptionHandler.Evidence {
         mtrunner.setOnProgressListener(progListener);
 
         Err err = Err.NO_ERR;
+        // Thumbnails are loaded in parallel, and videos are inserted to DB in batches.
+        final YTUtils.InsertVideoBatch batch
+            = new YTUtils.InsertVideoBatch(plid, mtpr.nrDone, mtpr.nrIgnored);
         Map.Entry<String, YTVideoFeed.Entry>[] mes = map.entrySet().toArray(new Map.Entry[0]);
         for (Map.Entry<String, YTVideoFeed.Entry> me : mes) {
             final YTVideoFeed.Entry e = me.getValue();
@@ -186,21 +197,22 @@ UnexpectedExceptionHandler.Evidence {
                 @Override
                 public Integer
                 doJob() {
-                    boolean r = false;
-                    try {
-                        r = insertVideoToPlaylist(plid, e);
-                        return 0;
-                    } finally {
-                        if (r)
-                            mtpr.nrDone.incrementAndGet();
-                        else
-                            mtpr.nrIgnored.incrementAndGet();
-                    }
+                    DB.InsertVideoArg arg = loadInsertVideoArg(e);
+                    if (null == arg)
+                        mtpr.nrIgnored.incrementAndGet();
+                    else
+                        batch.add(arg);
+                    return 0;
                 }
             });
         }
 
-        mtrunner.waitAllDone();
+        try {
+            mtrunner.waitAllDone();
+        } finally {
+            // Videos already loaded are inserted even if interrupted.
+            batch.flush();
+        }
         progl.onProgress(100);
         return err;
     }
@@ -69,7 +69,7 @@ YTSearchHelper.LoadThumbnailDoneReceiver {
             //   putting drawable at Layout may lead to "Exception : try to used recycled bitmap ...".
             // See comments at UiUtils.setThumbnailImageView() for details.
             // Initialize thumbnail to ic_unknown_image
-            UiUtils.setThumbnailImageView((ImageView)mItemViews[i].findViewById(R.id.thumbnail), null);
+            UiUtils.setThumbnailImageView((ImageView)mItemViews[i].findViewById(R.id.thumbnail), (byte[])null);
             setViewInvalid(mItemViews[i]);
             final YTSearchHelper.LoadThumbnailArg arg
                 = new YTSearchHelper.LoadThumbnailArg(i,
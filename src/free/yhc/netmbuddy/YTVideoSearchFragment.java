@@ -32,6 +32,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 import free.yhc.netmbuddy.db.DB;
+import free.yhc.netmbuddy.db.DBChangeLog;
 import free.yhc.netmbuddy.db.DBHelper;
 import free.yhc.netmbuddy.model.UnexpectedExceptionHandler;
 import free.yhc.netmbuddy.model.YTFeed;
@@ -52,6 +53,8 @@ UnexpectedExceptionHandler.Evidence {
     private final YTPlayer  mMp = YTPlayer.get();
 
     private DBHelper        mDbHelper;
+    // Version of video table seen at last 'onPause()'. -1 if not paused yet.
+    private long            mVidTblVersion = -1;
 
     private final OnPlayerUpdateDBListener mOnPlayerUpdateDbListener
         = new OnPlayerUpdateDBListener();
@@ -350,18 +353,31 @@ UnexpectedExceptionHandler.Evidence {
         super.onStart();
     }
 
+    private static boolean
+    isVideoSetChanged(DBChangeLog.Change[] cs) {
+        if (null == cs)
+            return true;
+        for (DBChangeLog.Change c : cs) {
+            if (DBChangeLog.Op.UPDATE != c.op)
+                return true;
+        }
+        return false;
+    }
+
     @Override
     public void
     onResume() {
         super.onResume();
         mMp.addOnDbUpdatedListener(this, mOnPlayerUpdateDbListener);
-        if (mDb.isRegisteredToVideoTableWatcher(this)) {
-            if (mDb.isVideoTableUpdated(this)
+        if (mVidTblVersion >= 0) {
+            // Only existence of videos matters to 'checkDup'.
+            // So, updating values of videos(ex. volume, time played) is ignored.
+            if (isVideoSetChanged(mDb.getVideoTableChangeLog().since(mVidTblVersion))
                 && null != getAdapter()) {
                 showLoadingLookAndFeel();
                 checkDupAsync(null, (YTVideoFeed.Entry[])getAdapter().getEntries());
             }
-            mDb.unregisterToVideoTableWatcher(this);
+            mVidTblVersion = -1;
         }
     }
 
@@ -369,7 +385,7 @@ UnexpectedExceptionHandler.Evidence {
     public void
     onPause() {
         mMp.removeOnDbUpdatedListener(this);
-        mDb.registerToVideoTableWatcher(this);
+        mVidTblVersion = mDb.getVideoTableChangeLog().version();
         super.onPause();
     }
 
@@ -395,7 +411,6 @@ UnexpectedExceptionHandler.Evidence {
     private void
     onDestroyInternal() {
         mDbHelper.close();
-        mDb.unregisterToVideoTableWatcher(this);
     }
 
     @Override
@@ -0,0 +1,56 @@
+/*****************************************************************************
+ *    Copyright (C) 2012, 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.db;
+
+import android.provider.BaseColumns;
+
+// NOTE
+// Bookmarks of video - one row per bookmark.
+// Until DB version 4, bookmarks are encoded to one string at 'ColVideo.BOOKMARKS'.
+// That string format is still used at sharing (See 'DB.getBookmarksString()').
+public enum ColBookmark implements DB.Col {
+        // BaseColumns._ID of TABLE_VIDEO table
+        VIDEOID         ("videoid",         "integer",  null,   "not null"),
+        POS             ("pos",             "integer",  null,   "not null"), // ms
+        NAME            ("name",            "text",     null,   "not null"),
+        ID              (BaseColumns._ID,   "integer",  null,   "primary key autoincrement, "
+                + "FOREIGN KEY(videoid) REFERENCES " + DB.getVideoTableName() + "(" + ColVideo.ID.getName() + ")");
+
+        private final String _mName;
+        private final String _mType;
+        private final String _mConstraint;
+        private final String _mDefault;
+
+        ColBookmark(String name, String type, String defaultv, String constraint) {
+            _mName = name;
+            _mType = type;
+            _mConstraint = constraint;
+            _mDefault = defaultv;
+        }
+        @Override
+        public String getName() { return _mName; }
+        @Override
+        public String getType() { return _mType; }
+        @Override
+        public String getConstraint() { return _mConstraint; }
+        @Override
+        public String getDefault() { return _mDefault; }
+    }
@@ -0,0 +1,54 @@
+/*****************************************************************************
+ *    Copyright (C) 2012, 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.db;
+
+import android.provider.BaseColumns;
+
+// NOTE
+// Groups of videos whose titles are similar with each other.
+// This is result of 'SimilarTitlesClusterer' and replaced as a whole at every run.
+public enum ColTitleDup implements DB.Col {
+        // Videos having same group id are in the same group.
+        GROUPID         ("groupid",         "integer",  null,   "not null"),
+        // BaseColumns._ID of TABLE_VIDEO table
+        VIDEOID         ("videoid",         "integer",  null,   "not null"),
+        ID              (BaseColumns._ID,   "integer",  null,   "primary key autoincrement");
+
+        private final String _mName;
+        private final String _mType;
+        private final String _mConstraint;
+        private final String _mDefault;
+
+        ColTitleDup(String name, String type, String defaultv, String constraint) {
+            _mName = name;
+            _mType = type;
+            _mConstraint = constraint;
+            _mDefault = defaultv;
+        }
+        @Override
+        public String getName() { return _mName; }
+        @Override
+        public String getType() { return _mType; }
+        @Override
+        public String getConstraint() { return _mConstraint; }
+        @Override
+        public String getDefault() { return _mDefault; }
+    }
@@ -24,6 +24,7 @@ import static free.yhc.netmbuddy.utils.Utils.eAssert;
 import android.content.ContentValues;
 import android.provider.BaseColumns;
 import free.yhc.netmbuddy.model.Policy;
+import free.yhc.netmbuddy.scmp.SCmp;
 
 public enum ColVideo implements DB.Col {
         // --------------------------------------------------------------------
@@ -33,6 +34,8 @@ public enum ColVideo implements DB.Col {
         DESCRIPTION     ("description",     "text",     null,   "not null"), // Not used yet.
         VIDEOID         ("videoid",         "text",     null,   "not null"), // Youtube Video Id (11-characters)
         PLAYTIME        ("playtime",        "integer",  null,   "not null"), // Seconds (int)
+        // Not used since DB version 5. Always empty. (See ColThumbnail)
+        // Column can't be dropped by ALTER TABLE of SQLite.
         THUMBNAIL       ("thumbnail",       "blob",     null,   "not null"),
 
         // --------------------------------------------------------------------
@@ -64,8 +67,8 @@ public enum ColVideo implements DB.Col {
         // newly added at DB version 2
         // --------------------------------------------------------------------
         AUTHOR          ("author",          "text",     "\"\"", ""), // YTFeed.Author.name
-        // Belows are not used yet.
         NRPLAYED        ("nrplayed",        "integer",  "0",    ""), // # of played
+        // Belows are not used yet.
         REL_VIDEOS_FEED ("relvideosfeed",   "text",     "\"\"", ""), // feeds for relative videos.
         // Reserved fields for future use
         // ENUM name can be changed without affecting DB
@@ -90,8 +93,27 @@ public enum ColVideo implements DB.Col {
         // [ Format ]
         // bookmark : <time(ms)>/<bookmark name>
         // bookmarks : <bookmark>@<bookmark>@...
+        //
+        // NOT used from DB version 5. Bookmarks are stored at separate table - ColBookmark.
+        // But, same string format is still used at sharing.
         BOOKMARKS       ("bookmarks",       "text",     "\"\"", ""),
 
+        // --------------------------------------------------------------------
+        // newly added at DB version 4
+        // --------------------------------------------------------------------
+        // Normalized title. See 'SCmp.normalize()'.
+        // Tokens of title are read from this instead of parsing title again.
+        NORMTITLE       ("normtitle",       "text",     "\"\"", ""),
+
+        // --------------------------------------------------------------------
+        // newly added at DB version 5
+        // --------------------------------------------------------------------
+        // Normalized author. See 'SCmp.normalize()'.
+        // Full-text index has this instead of author.
+        // So, author is matched with query tokens normalized in the same way with title.
+        // ('simple' tokenizer of FTS folds case of ASCII characters only.)
+        NORMAUTHOR      ("normauthor",      "text",     "\"\"", ""),
+
         ID              (BaseColumns._ID,   "integer",  null,   "primary key autoincrement");
 
         private final String _mName;
@@ -102,19 +124,16 @@ public enum ColVideo implements DB.Col {
         static ContentValues
         createContentValuesForInsert(String title, String videoId,
                                      int playtime, String author,
-                                     byte[] thumbnail, int volume,
-                                     String bookmarks) {
+                                     int volume) {
             eAssert(null != title && null != videoId);
-            if (null == thumbnail)
-                thumbnail = new byte[0];
 
             ContentValues cvs = new ContentValues();
             cvs.put(TITLE.getName(), title);
             cvs.put(DESCRIPTION.getName(), ""); // not used yet.
             cvs.put(VIDEOID.getName(), videoId);
             cvs.put(PLAYTIME.getName(), playtime);
-            cvs.put(THUMBNAIL.getName(), thumbnail);
-            cvs.put(BOOKMARKS.getName(), bookmarks);
+            cvs.put(THUMBNAIL.getName(), new byte[0]); // See ColThumbnail
+            cvs.put(BOOKMARKS.getName(), ""); // See ColBookmark
 
             if (DB.INVALID_VOLUME == volume)
                 volume = Policy.DEFAULT_VIDEO_VOLUME;
@@ -137,6 +156,16 @@ public enum ColVideo implements DB.Col {
             // --------------------------------------------------------------------
             cvs.put(AUTHOR.getName(), author);
 
+            // --------------------------------------------------------------------
+            // newly added at DB version 4
+            // --------------------------------------------------------------------
+            cvs.put(NORMTITLE.getName(), SCmp.normalize(title));
+
+            // --------------------------------------------------------------------
+            // newly added at DB version 5
+            // --------------------------------------------------------------------
+            cvs.put(NORMAUTHOR.getName(), SCmp.normalize(null == author? "": author));
+
             return cvs;
         }
 
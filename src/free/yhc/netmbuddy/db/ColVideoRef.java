@@ -23,12 +23,17 @@ package free.yhc.netmbuddy.db;
 import android.provider.BaseColumns;
 
 //NOTE
-//This is just video list
+//This is just (playlist, video) list - one table for all playlists.
 //To get detail and sorted table, 'Joining Table' should be used.
 public enum ColVideoRef implements DB.Col {
-        // primary key - BaseColumns._ID of TABLE_VIDEO table
-        VIDEOID         ("videoid",         "integer",  null,   ""),
+        // BaseColumns._ID of TABLE_PLAYLIST table
+        PLAYLISTID      ("playlistid",      "integer",  null,   "not null"),
+        // BaseColumns._ID of TABLE_VIDEO table
+        VIDEOID         ("videoid",         "integer",  null,   "not null"),
+        // Copy of title of video - for sorting videos of playlist with index.
+        TITLE           ("title",           "text",     "\"\"", ""),
         ID              (BaseColumns._ID,   "integer",  null,   "primary key autoincrement, "
+                + "FOREIGN KEY(playlistid) REFERENCES " + DB.getPlaylistTableName() + "(" + ColPlaylist.ID.getName() + "), "
                 + "FOREIGN KEY(videoid) REFERENCES " + DB.getVideoTableName() + "(" + ColVideo.ID.getName() + ")");
 
         private final String _mName;
@@ -23,17 +23,21 @@ package free.yhc.netmbuddy.db;
 import static free.yhc.netmbuddy.utils.Utils.eAssert;
 
 import java.io.File;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import free.yhc.netmbuddy.model.Policy;
 import free.yhc.netmbuddy.model.UnexpectedExceptionHandler;
+import free.yhc.netmbuddy.scmp.SCmp;
 import free.yhc.netmbuddy.utils.Utils;
 
 public class DB implements
@@ -57,22 +61,48 @@ UnexpectedExceptionHandler.Evidence {
     // ----------------------------------------------------------------------------------------------------------------
     // ytmp : YouTubeMusicPlayer
     private static final String NAME            = "ytmp.db";
-    private static final int    VERSION         = 3;
+    private static final int    VERSION         = 5;
 
     private static final String TABLE_VIDEO             = "video";
     private static final String TABLE_PLAYLIST          = "playlist";
-    private static final String TABLE_VIDEOREF_PREFIX   = "videoref_";
+    private static final String TABLE_VIDEOREF          = "videoref";
+    private static final String TABLE_TITLETOKEN        = "titletoken";
+    private static final String TABLE_TITLEDUP          = "titledup";
+    private static final String TABLE_THUMBNAIL         = "thumbnail";
+    private static final String TABLE_BOOKMARK          = "bookmark";
+    private static final String TABLE_VIDEOFTS          = "videofts";
+
+    private static final String INDEX_VIDEO_VIDEOID     = "video_videoid";
+    private static final String INDEX_VIDEOREF_PLAYLIST = "videoref_playlistid_videoid";
+    private static final String INDEX_VIDEOREF_VIDEO    = "videoref_videoid_playlistid";
+    private static final String INDEX_VIDEOREF_TITLE    = "videoref_playlistid_title_videoid";
+    private static final String INDEX_TITLETOKEN_TOKEN  = "titletoken_token";
+    private static final String INDEX_TITLETOKEN_VIDEO  = "titletoken_videoid";
+    private static final String INDEX_TITLEDUP_VIDEO    = "titledup_videoid";
+    private static final String INDEX_BOOKMARK_VIDEO    = "bookmark_videoid_pos";
+
+    private static final String TRIGGER_VIDEOFTS_INSERT = "videofts_insert";
+    private static final String TRIGGER_VIDEOFTS_DELETE = "videofts_delete";
+    private static final String TRIGGER_VIDEOFTS_UPDATE = "videofts_update";
+    private static final String TRIGGER_VIDEOREF_INSERT = "videoref_title_insert";
+    private static final String TRIGGER_VIDEOREF_UPDATE = "videoref_title_update";
 
     private static DB instance = null;
 
     private DBOpenHelper        mDbOpenHelper = null;
     private SQLiteDatabase      mDb = null;
+    // Compiled statements of 'UpdStmt'. Compiled at first use. Indexed by ordinal.
+    private final SQLiteStatement[] mUpdStmts   = new SQLiteStatement[UpdStmt.values().length];
+    private SQLiteStatement     mChangesStmt    = null;
 
-    // mPlTblWM : PLaylist TaBLe Watcher Map
-    // Watcher for playlist table is changed
-    private final HashMap<Object, Boolean> mPlTblWM     = new HashMap<Object, Boolean>();
-    // Video table Watcher Map
-    private final HashMap<Object, Boolean> mVidTblWM    = new HashMap<Object, Boolean>();
+    // Change logs of playlist and video table.
+    // NOTE
+    // Changes of video references are logged as update of ColPlaylist.SIZE and ColVideo.REFCOUNT.
+    // Changes of bookmarks are logged as update of ColVideo.BOOKMARKS.
+    private final DBChangeLog mPlTblLog     = new DBChangeLog(Policy.DB_CHANGELOG_SIZE);
+    private final DBChangeLog mVidTblLog    = new DBChangeLog(Policy.DB_CHANGELOG_SIZE);
+    // Bookkeeping values of playback not written to DB yet.
+    private final DBWriteBuffer mWriteBuf   = new DBWriteBuffer();
 
     public static enum Err {
         NO_ERR,
@@ -106,6 +136,59 @@ UnexpectedExceptionHandler.Evidence {
         }
     }
 
+    // Frequently-used update statements (ex. at playback path).
+    // "UPDATE <table> SET <field> = ? WHERE <where> = ?"
+    // or "UPDATE <table> SET <field> = <field> + ? WHERE <where> = ?" for counters.
+    private static enum UpdStmt {
+        VIDEO_TIME_PLAYED_BY_VIDEOID    (TABLE_VIDEO,       ColVideo.TIME_PLAYED,   ColVideo.VIDEOID,   false),
+        VIDEO_VOLUME_BY_VIDEOID         (TABLE_VIDEO,       ColVideo.VOLUME,        ColVideo.VIDEOID,   false),
+        VIDEO_NRPLAYED_ADD_BY_VIDEOID   (TABLE_VIDEO,       ColVideo.NRPLAYED,      ColVideo.VIDEOID,   true),
+        VIDEO_REFCOUNT_ADD_BY_ID        (TABLE_VIDEO,       ColVideo.REFCOUNT,      ColVideo.ID,        true),
+        PLAYLIST_SIZE_ADD_BY_ID         (TABLE_PLAYLIST,    ColPlaylist.SIZE,       ColPlaylist.ID,     true),
+        // Only one argument : video id.
+        VIDEO_DELETE_UNREFERENCED       ("DELETE FROM " + TABLE_VIDEO
+                                         + " WHERE " + ColVideo.ID.getName() + " = ?"
+                                         + " AND " + ColVideo.REFCOUNT.getName() + " <= 0");
+
+        private final String sql;
+
+        UpdStmt(String aSql) {
+            sql = aSql;
+        }
+
+        UpdStmt(String table, Col field, Col where, boolean add) {
+            this("UPDATE " + table
+                 + " SET " + field.getName() + " = "
+                 + (add? field.getName() + " + ?": "?")
+                 + " WHERE " + where.getName() + " = ?");
+        }
+    }
+
+    /**
+     * Argument of 'insertVideosToPlaylist'
+     */
+    public static class InsertVideoArg {
+        public String   ytvid;
+        public String   title;
+        public String   author;
+        public int      playtime;
+        public byte[]   thumbnail;
+        public int      volume;
+        public String   bookmarks;
+        public InsertVideoArg(String aYtvid, String aTitle,
+                              String aAuthor, int aPlaytime,
+                              byte[] aThumbnail, int aVolume,
+                              String aBookmarks) {
+            ytvid = aYtvid;
+            title = aTitle;
+            author = aAuthor;
+            playtime = aPlaytime;
+            thumbnail = aThumbnail;
+            volume = aVolume;
+            bookmarks = aBookmarks;
+        }
+    }
+
     private class DBOpenHelper extends SQLiteOpenHelper {
         DBOpenHelper() {
             super(Utils.getAppContext(), NAME, null, getVersion());
@@ -114,8 +197,7 @@ UnexpectedExceptionHandler.Evidence {
         @Override
         public void
         onCreate(SQLiteDatabase db) {
-            db.execSQL(DBUtils.buildTableSQL(TABLE_VIDEO, ColVideo.values()));
-            db.execSQL(DBUtils.buildTableSQL(TABLE_PLAYLIST, ColPlaylist.values()));
+            createTables(db);
         }
 
         @Override
@@ -139,6 +221,23 @@ UnexpectedExceptionHandler.Evidence {
         }
     }
 
+    /**
+     * Create all tables, indexes and triggers of current DB version.
+     * Static because this is also used by DBQueryPlan to build DB having same schema.
+     */
+    static void
+    createTables(SQLiteDatabase db) {
+        db.execSQL(DBUtils.buildTableSQL(TABLE_VIDEO, ColVideo.values()));
+        createVideoIndex(db);
+        createVideoFtsTable(db);
+        createThumbnailTable(db);
+        db.execSQL(DBUtils.buildTableSQL(TABLE_PLAYLIST, ColPlaylist.values()));
+        createVideoRefTable(db);
+        createTitleTokenTable(db);
+        createTitleDupTable(db);
+        createBookmarkTable(db);
+    }
+
     static String
     getName() {
         return NAME;
@@ -160,8 +259,322 @@ UnexpectedExceptionHandler.Evidence {
     }
 
     static String
-    getVideoRefTableName(long playlistId) {
-        return TABLE_VIDEOREF_PREFIX + playlistId;
+    getVideoRefTableName() {
+        return TABLE_VIDEOREF;
+    }
+
+    static String
+    getTitleTokenTableName() {
+        return TABLE_TITLETOKEN;
+    }
+
+    static String
+    getTitleDupTableName() {
+        return TABLE_TITLEDUP;
+    }
+
+    static String
+    getVideoFtsTableName() {
+        return TABLE_VIDEOFTS;
+    }
+
+    // ----------------------------------------------------------------------
+    //
+    // For TABLE_VIDEO
+    //   Static because these are also used by DBUpgrader.
+    //
+    // ----------------------------------------------------------------------
+    static void
+    createVideoIndex(SQLiteDatabase db) {
+        // NOTE
+        // Youtube video id is unique in the table, but index is NOT 'UNIQUE'.
+        // DB made by old version may have duplicated one(by unknown bug),
+        //   and upgrading that DB SHOULD NOT fail because of it.
+        db.execSQL(DBUtils.buildIndexSQL(INDEX_VIDEO_VIDEOID,
+                                         TABLE_VIDEO,
+                                         new ColVideo[] { ColVideo.VIDEOID },
+                                         false));
+    }
+
+    // ----------------------------------------------------------------------
+    //
+    // For TABLE_VIDEOFTS
+    //   Static because these are also used by DBUpgrader.
+    //
+    // ----------------------------------------------------------------------
+    /**
+     * Create full-text index of video table and fill it with existing videos.
+     * Index is kept in sync. with video table by triggers.
+     * So, code updating video table doesn't need to care about it.
+     */
+    static void
+    createVideoFtsTable(SQLiteDatabase db) {
+        try {
+            db.execSQL(DBUtils.buildFtsTableSQL(TABLE_VIDEOFTS, ColVideoFts.values(), "fts4"));
+        } catch (SQLiteException e) {
+            // NOTE
+            // FTS4 is available from SQLite 3.7.4 (Android 3.0).
+            // Queries used here are also supported by FTS3.
+            db.execSQL(DBUtils.buildFtsTableSQL(TABLE_VIDEOFTS, ColVideoFts.values(), "fts3"));
+        }
+
+        String ftsCols = "docid, " + ColVideoFts.TITLE.getName() + ", " + ColVideoFts.AUTHOR.getName();
+        db.execSQL("CREATE TRIGGER " + TRIGGER_VIDEOFTS_INSERT
+                   + " AFTER INSERT ON " + TABLE_VIDEO + " BEGIN"
+                   + " INSERT INTO " + TABLE_VIDEOFTS + " (" + ftsCols + ")"
+                   + " VALUES (new." + ColVideo.ID.getName()
+                   + ", new." + ColVideo.NORMTITLE.getName()
+                   + ", new." + ColVideo.NORMAUTHOR.getName() + ");"
+                   + " END;");
+        db.execSQL("CREATE TRIGGER " + TRIGGER_VIDEOFTS_DELETE
+                   + " AFTER DELETE ON " + TABLE_VIDEO + " BEGIN"
+                   + " DELETE FROM " + TABLE_VIDEOFTS
+                   + " WHERE docid = old." + ColVideo.ID.getName() + ";"
+                   + " END;");
+        // Only title and author are indexed. Updating other fields doesn't fire trigger.
+        db.execSQL("CREATE TRIGGER " + TRIGGER_VIDEOFTS_UPDATE
+                   + " AFTER UPDATE OF " + ColVideo.NORMTITLE.getName() + ", " + ColVideo.NORMAUTHOR.getName()
+                   + " ON " + TABLE_VIDEO + " BEGIN"
+                   + " UPDATE " + TABLE_VIDEOFTS
+                   + " SET " + ColVideoFts.TITLE.getName() + " = new." + ColVideo.NORMTITLE.getName()
+                   + ", " + ColVideoFts.AUTHOR.getName() + " = new." + ColVideo.NORMAUTHOR.getName()
+                   + " WHERE docid = new." + ColVideo.ID.getName() + ";"
+                   + " END;");
+
+        db.execSQL("INSERT INTO " + TABLE_VIDEOFTS + " (" + ftsCols + ")"
+                   + " SELECT " + ColVideo.ID.getName()
+                   + ", " + ColVideo.NORMTITLE.getName()
+                   + ", " + ColVideo.NORMAUTHOR.getName()
+                   + " FROM " + TABLE_VIDEO + ";");
+    }
+
+    // ----------------------------------------------------------------------
+    //
+    // For TABLE_THUMBNAIL
+    //   Static because these are also used by DBUpgrader and DBManager.
+    //
+    // ----------------------------------------------------------------------
+    static void
+    createThumbnailTable(SQLiteDatabase db) {
+        db.execSQL(DBUtils.buildTableSQL(TABLE_THUMBNAIL, ColThumbnail.values()));
+    }
+
+    static String
+    getThumbnailTableName() {
+        return TABLE_THUMBNAIL;
+    }
+
+    static String
+    getBookmarkTableName() {
+        return TABLE_BOOKMARK;
+    }
+
+    /**
+     * @param db
+     * @param vid
+     *   BaseColumns._ID of TABLE_VIDEO table
+     * @return
+     *   empty array if there is no thumbnail.
+     */
+    static byte[]
+    queryThumbnail(SQLiteDatabase db, long vid) {
+        Cursor c = db.rawQuery(DBUtils.buildQueryThumbnailSQL(vid), null);
+        try {
+            if (c.moveToFirst())
+                return c.getBlob(0);
+            return new byte[0];
+        } finally {
+            c.close();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    //
+    // For TABLE_BOOKMARK
+    //   Static because these are also used by DBUpgrader and DBManager.
+    //
+    // ----------------------------------------------------------------------
+    static void
+    createBookmarkTable(SQLiteDatabase db) {
+        db.execSQL(DBUtils.buildTableSQL(TABLE_BOOKMARK, ColBookmark.values()));
+        // For bookmarks of video sorted by position.
+        db.execSQL(DBUtils.buildIndexSQL(INDEX_BOOKMARK_VIDEO,
+                                         TABLE_BOOKMARK,
+                                         new ColBookmark[] { ColBookmark.VIDEOID,
+                                                             ColBookmark.POS },
+                                         false));
+    }
+
+    static long
+    insertBookmark(SQLiteDatabase db, long vid, Bookmark bm) {
+        ContentValues cvs = new ContentValues();
+        cvs.put(ColBookmark.VIDEOID.getName(), vid);
+        cvs.put(ColBookmark.POS.getName(), bm.pos);
+        cvs.put(ColBookmark.NAME.getName(), bm.name);
+        return db.insert(TABLE_BOOKMARK, null, cvs);
+    }
+
+    static void
+    insertBookmarks(SQLiteDatabase db, long vid, Bookmark[] bms) {
+        for (Bookmark bm : bms)
+            insertBookmark(db, vid, bm);
+    }
+
+    /**
+     * @param db
+     * @param vid
+     *   BaseColumns._ID of TABLE_VIDEO table
+     * @param from
+     *   inclusive. (ms)
+     * @param to
+     *   exclusive. (ms)
+     * @return
+     *   bookmarks sorted by position.
+     */
+    static Bookmark[]
+    queryBookmarks(SQLiteDatabase db, long vid, int from, int to) {
+        Cursor c = db.rawQuery(DBUtils.buildQueryBookmarksSQL(vid, from, to), null);
+        try {
+            Bookmark[] bms = new Bookmark[c.getCount()];
+            int i = 0;
+            if (c.moveToFirst()) {
+                do {
+                    bms[i++] = new Bookmark(c.getString(0), c.getInt(1));
+                } while (c.moveToNext());
+            }
+            return bms;
+        } finally {
+            c.close();
+        }
+    }
+
+    static Bookmark[]
+    queryBookmarks(SQLiteDatabase db, long vid) {
+        return queryBookmarks(db, vid, 0, Integer.MAX_VALUE);
+    }
+
+    // ----------------------------------------------------------------------
+    //
+    // For TABLE_VIDEOREF
+    //   Static because these are also used by DBUpgrader.
+    //
+    // ----------------------------------------------------------------------
+    static void
+    createVideoRefTable(SQLiteDatabase db) {
+        db.execSQL(DBUtils.buildTableSQL(TABLE_VIDEOREF, ColVideoRef.values()));
+        // For videos of playlist.
+        db.execSQL(DBUtils.buildIndexSQL(INDEX_VIDEOREF_PLAYLIST,
+                                         TABLE_VIDEOREF,
+                                         new ColVideoRef[] { ColVideoRef.PLAYLISTID,
+                                                             ColVideoRef.VIDEOID },
+                                         false));
+        // For playlists containing video.
+        db.execSQL(DBUtils.buildIndexSQL(INDEX_VIDEOREF_VIDEO,
+                                         TABLE_VIDEOREF,
+                                         new ColVideoRef[] { ColVideoRef.VIDEOID,
+                                                             ColVideoRef.PLAYLISTID },
+                                         false));
+        // For videos of playlist sorted by title, page by page. (See DBPagedCursor)
+        db.execSQL(DBUtils.buildIndexSQL(INDEX_VIDEOREF_TITLE,
+                                         TABLE_VIDEOREF,
+                                         new ColVideoRef[] { ColVideoRef.PLAYLISTID,
+                                                             ColVideoRef.TITLE,
+                                                             ColVideoRef.VIDEOID },
+                                         false));
+
+        // Title of reference is copy of video's title. It is kept in sync. by triggers.
+        // So, code inserting references or updating title doesn't need to care about it.
+        String refTitle = ColVideoRef.TITLE.getName();
+        db.execSQL("CREATE TRIGGER " + TRIGGER_VIDEOREF_INSERT
+                   + " AFTER INSERT ON " + TABLE_VIDEOREF + " BEGIN"
+                   + " UPDATE " + TABLE_VIDEOREF
+                   + " SET " + refTitle + " = (SELECT " + ColVideo.TITLE.getName()
+                   + "     FROM " + TABLE_VIDEO
+                   + "     WHERE " + ColVideo.ID.getName() + " = new." + ColVideoRef.VIDEOID.getName() + ")"
+                   + " WHERE " + ColVideoRef.ID.getName() + " = new." + ColVideoRef.ID.getName() + ";"
+                   + " END;");
+        db.execSQL("CREATE TRIGGER " + TRIGGER_VIDEOREF_UPDATE
+                   + " AFTER UPDATE OF " + ColVideo.TITLE.getName() + " ON " + TABLE_VIDEO + " BEGIN"
+                   + " UPDATE " + TABLE_VIDEOREF
+                   + " SET " + refTitle + " = new." + ColVideo.TITLE.getName()
+                   + " WHERE " + ColVideoRef.VIDEOID.getName() + " = new." + ColVideo.ID.getName() + ";"
+                   + " END;");
+    }
+
+    // ----------------------------------------------------------------------
+    //
+    // For TABLE_TITLETOKEN
+    //   Static because these are also used by DBUpgrader.
+    //
+    // ----------------------------------------------------------------------
+    static void
+    createTitleTokenTable(SQLiteDatabase db) {
+        db.execSQL(DBUtils.buildTableSQL(TABLE_TITLETOKEN, ColTitleToken.values()));
+        db.execSQL(DBUtils.buildIndexSQL(INDEX_TITLETOKEN_TOKEN,
+                                         TABLE_TITLETOKEN,
+                                         new ColTitleToken[] { ColTitleToken.TOKEN },
+                                         false));
+        db.execSQL(DBUtils.buildIndexSQL(INDEX_TITLETOKEN_VIDEO,
+                                         TABLE_TITLETOKEN,
+                                         new ColTitleToken[] { ColTitleToken.VIDEOID },
+                                         false));
+    }
+
+    /**
+     * @param db
+     * @param vid
+     * @param normtitle
+     *   normalized title. See ColVideo.NORMTITLE
+     */
+    static void
+    insertTitleTokens(SQLiteDatabase db, long vid, String normtitle) {
+        HashSet<String> toks = new HashSet<String>();
+        for (String tok : SCmp.tokenizeNormalized(normtitle)) {
+            if (!toks.add(tok))
+                continue; // duplicated token in the title.
+            ContentValues cvs = new ContentValues();
+            cvs.put(ColTitleToken.TOKEN.getName(), tok);
+            cvs.put(ColTitleToken.VIDEOID.getName(), vid);
+            db.insert(TABLE_TITLETOKEN, null, cvs);
+        }
+    }
+
+    /**
+     * Same with 'insertTitleTokens(SQLiteDatabase, long, String)' except that
+     *   pre-compiled statement is used.
+     * @param stmt
+     *   "INSERT INTO titletoken (token, videoid) VALUES (?, ?)"
+     */
+    static void
+    insertTitleTokens(SQLiteStatement stmt, long vid, String normtitle) {
+        HashSet<String> toks = new HashSet<String>();
+        for (String tok : SCmp.tokenizeNormalized(normtitle)) {
+            if (!toks.add(tok))
+                continue; // duplicated token in the title.
+            stmt.bindString(1, tok);
+            stmt.bindLong(2, vid);
+            stmt.executeInsert();
+        }
+    }
+
+    static void
+    deleteTitleTokens(SQLiteDatabase db, long vid) {
+        db.delete(TABLE_TITLETOKEN, ColTitleToken.VIDEOID.getName() + " = " + vid, null);
+    }
+
+    // ----------------------------------------------------------------------
+    //
+    // For TABLE_TITLEDUP
+    //   Static because these are also used by DBUpgrader.
+    //
+    // ----------------------------------------------------------------------
+    static void
+    createTitleDupTable(SQLiteDatabase db) {
+        db.execSQL(DBUtils.buildTableSQL(TABLE_TITLEDUP, ColTitleDup.values()));
+        db.execSQL(DBUtils.buildIndexSQL(INDEX_TITLEDUP_VIDEO,
+                                         TABLE_TITLEDUP,
+                                         new ColTitleDup[] { ColTitleDup.VIDEOID },
+                                         false));
     }
 
 
@@ -187,15 +600,32 @@ UnexpectedExceptionHandler.Evidence {
         eAssert(null == mDb && null == mDbOpenHelper);
         mDbOpenHelper = new DBOpenHelper();
         mDb = mDbOpenHelper.getWritableDatabase();
+        enableWriteAheadLogging();
     }
 
     // package private.
     void
     close() {
-        mDb.close();
-        mDb = null;
-        mDbOpenHelper.close();
-        mDbOpenHelper = null;
+        // Flushing thread may be waiting for the lock.
+        // DB is closed with the lock held. So, it sees closed DB. See 'flushPendingWrites()'.
+        synchronized (mWriteBuf.flushLock) {
+            // Pending writes SHOULD be in DB file before exporting, backing up or importing DB.
+            flushPendingWrites();
+            synchronized (mUpdStmts) {
+                for (int i = 0; i < mUpdStmts.length; i++) {
+                    if (null != mUpdStmts[i])
+                        mUpdStmts[i].close();
+                    mUpdStmts[i] = null;
+                }
+                if (null != mChangesStmt)
+                    mChangesStmt.close();
+                mChangesStmt = null;
+            }
+            mDb.close();
+            mDb = null;
+            mDbOpenHelper.close();
+            mDbOpenHelper = null;
+        }
     }
 
 
@@ -205,46 +635,79 @@ UnexpectedExceptionHandler.Evidence {
     //
     // ======================================================================
 
-    // ----------------------------------------------------------------------
-    //
-    // For watchers
-    //
-    // ----------------------------------------------------------------------
-    private void
-    markBooleanWatcherChanged(HashMap<Object, Boolean> hm) {
-        synchronized (hm) {
-            Iterator<Object> itr = hm.keySet().iterator();
-            while (itr.hasNext())
-                hm.put(itr.next(), true);
-        }
-    }
-
+    // NOTE
+    // With write-ahead-logging, readers don't block writer and writer doesn't block readers.
+    // And SQLiteDatabase keeps small pool of connections for it.
+    // Queries from threads that are not in transaction are run at read-only connections of the pool.
+    // So, long transaction of background job(ex. importing) doesn't block reloading cursor of list,
+    //   and querying doesn't block writes of player.
+    // Statements in transaction are always run at the one primary connection.
     private void
-    registerToBooleanWatcher(HashMap<Object, Boolean> hm, Object key) {
-        synchronized (hm) {
-            hm.put(key, false);
+    enableWriteAheadLogging() {
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.HONEYCOMB) {
+            boolean wal = mDb.enableWriteAheadLogging();
+            if (DBG) P.v("Write-ahead-logging enabled : " + wal);
         }
     }
 
-    private boolean
-    isRegisteredToBooleanWatcher(HashMap<Object, Boolean> hm, Object key) {
-        synchronized (hm) {
-            return (null != hm.get(key));
+    // ----------------------------------------------------------------------
+    //
+    // For compiled statements
+    //
+    // ----------------------------------------------------------------------
+    private SQLiteStatement
+    getUpdStmt(UpdStmt us) {
+        synchronized (mUpdStmts) {
+            int i = us.ordinal();
+            if (null == mUpdStmts[i])
+                mUpdStmts[i] = mDb.compileStatement(us.sql);
+            if (null == mChangesStmt)
+                mChangesStmt = mDb.compileStatement("SELECT changes()");
+            return mUpdStmts[i];
         }
     }
 
-    private void
-    unregisterToBooleanWatcher(HashMap<Object, Boolean> hm, Object key) {
-        synchronized (hm) {
-            hm.remove(key);
-        }
+    /**
+     * Arguments SHOULD be bound to 'stmt' already.
+     * NOTE
+     * 'SQLiteStatement.executeUpdateDelete()' is not available at API level 10.
+     * So, # of changed rows is read by 'changes()' in the same transaction.
+     * 'changes()' is value of connection. Out of transaction, it may be run at other connection
+     *   of the pool (See 'open()').
+     * @return
+     *   number of rows that are updated.
+     */
+    private int
+    execUpdStmtLocked(SQLiteStatement stmt) {
+        stmt.execute();
+        return (int)mChangesStmt.simpleQueryForLong();
     }
 
-    private boolean
-    isBooleanWatcherUpdated(HashMap<Object, Boolean> hm, Object key) {
-        synchronized (hm) {
-            return hm.get(key);
+    /**
+     * NOTE
+     * Transaction is started before locking statements.
+     * Otherwise, dead-lock may happen with thread that is in transaction already.
+     * @param args
+     *   bound to '?' of statement in order. See 'DatabaseUtils.bindObjectToProgram()'.
+     * @return
+     *   number of rows that are updated.
+     */
+    private int
+    execUpdStmt(UpdStmt us, Object... args) {
+        int r = 0;
+        mDb.beginTransaction();
+        try {
+            SQLiteStatement stmt = getUpdStmt(us);
+            synchronized (mUpdStmts) {
+                for (int i = 0; i < args.length; i++)
+                    DatabaseUtils.bindObjectToProgram(stmt, i + 1, args[i]);
+                r = execUpdStmtLocked(stmt);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
         }
+        return r;
     }
 
     // ----------------------------------------------------------------------
@@ -260,11 +723,31 @@ UnexpectedExceptionHandler.Evidence {
                          null, null, null, null);
     }
 
+    /**
+     * Delete rows of other tables that belong to the deleted video.
+     */
+    private void
+    deleteVideoDependents(long id) {
+        deleteTitleTokens(mDb, id);
+        mDb.delete(TABLE_TITLEDUP, ColTitleDup.VIDEOID.getName() + " = " + id, null);
+        mDb.delete(TABLE_THUMBNAIL, ColThumbnail.ID.getName() + " = " + id, null);
+        mDb.delete(TABLE_BOOKMARK, ColBookmark.VIDEOID.getName() + " = " + id, null);
+    }
+
     private int
     deleteVideo(long id) {
-        int r = mDb.delete(TABLE_VIDEO, ColVideo.ID.getName() + " = " + id, null);
+        int r = 0;
+        mDb.beginTransaction();
+        try {
+            r = mDb.delete(TABLE_VIDEO, ColVideo.ID.getName() + " = " + id, null);
+            if (r > 0)
+                deleteVideoDependents(id);
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
         if (r > 0)
-            markBooleanWatcherChanged(mVidTblWM);
+            mVidTblLog.add(DBChangeLog.Op.DELETE, id, null);
         return r;
     }
 
@@ -286,90 +769,80 @@ UnexpectedExceptionHandler.Evidence {
                 ColVideo[] fields, Object[] vs) {
         eAssert(fields.length == vs.length);
         ContentValues cvs = new ContentValues();
-        for (int i = 0; i < fields.length; i++) {
-            try {
-                Method m = cvs.getClass().getMethod("put", String.class, vs[i].getClass());
-                m.invoke(cvs, fields[i].getName(), vs[i]);
-            } catch (Exception e) {
-                eAssert(false);
-            }
-        }
+        for (int i = 0; i < fields.length; i++)
+            DBUtils.putContentValue(cvs, fields[i], vs[i]);
 
         int r = mDb.update(TABLE_VIDEO,
                            cvs,
                            where.getName() + " = " + DatabaseUtils.sqlEscapeString(wherev.toString()),
                            null);
         if (r > 0)
-            markBooleanWatcherChanged(mVidTblWM);
+            mVidTblLog.add(DBChangeLog.Op.UPDATE,
+                           ColVideo.ID == where? new long[] { ((Number)wherev).longValue() }: null,
+                           fields);
         return r;
     }
 
-    /**
-     * Update video value
-     * @param where
-     *   field of where clause
-     * @param wherev
-     *   field value of where clause
-     * @param field
-     *   field to update
-     * @param v
-     *   new field value
-     * @return
-     *   number of rows that are updated.
-     */
-    private int
-    updateVideo(ColVideo where, Object wherev,
-                ColVideo field, Object v) {
-        return updateVideo(where,
-                           wherev,
-                           new ColVideo[] { field },
-                           new Object[] { v });
-    }
-
     private int
     updateVideo(long id, ColVideo[] cols, Object[] vs) {
         return updateVideo(ColVideo.ID, id, cols, vs);
     }
 
+    /**
+     * Reference count is changed at SQL side. Reading current value is not required.
+     * Video is deleted when it is not referenced anymore.
+     * @param id
+     * @param delta
+     *   value added to reference count.
+     */
     private void
-    incVideoReference(long id) {
-        long rcnt = getVideoInfoLong(id, ColVideo.REFCOUNT);
-        eAssert(rcnt >= 0);
-        rcnt++;
-        updateVideo(id, new ColVideo[] { ColVideo.REFCOUNT }, new Long[] { rcnt });
+    addVideoReference(long id, long delta) {
+        boolean deleted = false;
+        mDb.beginTransaction();
+        try {
+            int r = execUpdStmt(UpdStmt.VIDEO_REFCOUNT_ADD_BY_ID, delta, id);
+            eAssert(1 == r);
+            if (delta < 0
+                && execUpdStmt(UpdStmt.VIDEO_DELETE_UNREFERENCED, id) > 0) {
+                deleteVideoDependents(id);
+                deleted = true;
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        if (deleted)
+            mVidTblLog.add(DBChangeLog.Op.DELETE, id, null);
+        else
+            mVidTblLog.add(DBChangeLog.Op.UPDATE, id, new ColVideo[] { ColVideo.REFCOUNT });
     }
 
     private void
-    decVideoReference(long id) {
-        long rcnt = getVideoInfoLong(id, ColVideo.REFCOUNT);
-        eAssert(rcnt >= 0);
-        rcnt--;
-        if (0 == rcnt)
-            deleteVideo(id);
-        else
-            updateVideo(id, new ColVideo[] { ColVideo.REFCOUNT }, new Long[] { rcnt });
+    incVideoReference(long id) {
+        addVideoReference(id, 1);
     }
 
-    private long
-    getVideoInfoLong(long id, ColVideo col) {
-        Cursor c = queryVideos(new ColVideo[] { col }, ColVideo.ID, id);
-        eAssert(c.getCount() > 0);
-        c.moveToFirst();
-        long r = c.getLong(0);
-        c.close();
-        return r;
+    private void
+    decVideoReference(long id) {
+        addVideoReference(id, -1);
     }
 
     // ----------------------------------------------------------------------
     //
-    // For TABLE_VIDEOREF_xxx
+    // For TABLE_VIDEOREF
     //
     // ----------------------------------------------------------------------
+    private static String
+    buildVideoRefWhere(long plid, long vid) {
+        return ColVideoRef.PLAYLISTID.getName() + " = " + plid
+               + " AND " + ColVideoRef.VIDEOID.getName() + " = " + vid;
+    }
+
     private boolean
     containsVideo(long plid, long vid) {
-        Cursor c = mDb.query(getVideoRefTableName(plid),
+        Cursor c = mDb.query(TABLE_VIDEOREF,
                              new String[] { ColVideoRef.ID.getName() },
-                             ColVideoRef.VIDEOID.getName() + " = " + vid,
+                             buildVideoRefWhere(plid, vid),
                              null, null, null, null);
         boolean ret = c.getCount() > 0;
         c.close();
@@ -388,17 +861,17 @@ UnexpectedExceptionHandler.Evidence {
         int r = 0;
         try {
             mDb.beginTransaction();
-            r =  mDb.delete(getVideoRefTableName(plid),
-                            ColVideoRef.VIDEOID.getName() + " = " + vid,
+            r =  mDb.delete(TABLE_VIDEOREF,
+                            buildVideoRefWhere(plid, vid),
                             null);
 
             // NOTE
             // "eAssert(0 == r || 1 == r);" is expected.
             // But, who knows? (may from unknown bug...)
             // To increase code tolerance, case that "r > 1" is also handled here.
-            while (r-- > 0) {
-                decVideoReference(vid);
-                decPlaylistSize(plid);
+            if (r > 0) {
+                addVideoReference(vid, -r);
+                addPlaylistSize(plid, -r);
             }
             mDb.setTransactionSuccessful();
         } finally {
@@ -407,6 +880,59 @@ UnexpectedExceptionHandler.Evidence {
         return r;
     }
 
+    /**
+     * @param plid
+     * @param vids
+     * @return
+     *   ids of videos that are in the playlist among 'vids'.
+     */
+    private HashSet<Long>
+    queryVideoRefs(long plid, long[] vids) {
+        HashSet<Long> r = new HashSet<Long>();
+        // Too long SQL statement is avoided.
+        for (int s = 0; s < vids.length; s += Policy.DB_MAX_IN_LIST_SIZE) {
+            int e = Math.min(vids.length, s + Policy.DB_MAX_IN_LIST_SIZE);
+            String in = "";
+            for (int i = s; i < e; i++)
+                in += (i > s? ", ": "") + vids[i];
+            Cursor c = mDb.query(TABLE_VIDEOREF,
+                                 new String[] { ColVideoRef.VIDEOID.getName() },
+                                 ColVideoRef.PLAYLISTID.getName() + " = " + plid
+                                 + " AND " + ColVideoRef.VIDEOID.getName() + " IN (" + in + ")",
+                                 null, null, null, null);
+            if (c.moveToFirst()) {
+                do {
+                    r.add(c.getLong(0));
+                } while (c.moveToNext());
+            }
+            c.close();
+        }
+        return r;
+    }
+
+    private SQLiteStatement
+    compileInsertVideoRef() {
+        return mDb.compileStatement(DBUtils.buildInsertSQL(
+                TABLE_VIDEOREF,
+                new String[] { ColVideoRef.PLAYLISTID.getName(),
+                               ColVideoRef.VIDEOID.getName() },
+                false));
+    }
+
+    /**
+     * Reference count of video is increased, but playlist size is NOT changed.
+     * Caller SHOULD be in transaction.
+     * @param stmt
+     *   statement from 'compileInsertVideoRef()'
+     */
+    private void
+    insertVideoRef(SQLiteStatement stmt, long plid, long vid) {
+        stmt.bindLong(1, plid);
+        stmt.bindLong(2, vid);
+        stmt.executeInsert();
+        execUpdStmt(UpdStmt.VIDEO_REFCOUNT_ADD_BY_ID, 1, vid);
+    }
+
     // ----------------------------------------------------------------------
     //
     // For TABLE_PLAYLIST
@@ -424,33 +950,23 @@ UnexpectedExceptionHandler.Evidence {
                          null, null, null, null);
     }
 
+    /**
+     * Size is changed at SQL side. Reading current value is not required.
+     * @param plid
+     * @param delta
+     *   value added to size.
+     */
     private int
-    updatePlaylistSize(long plid, long size) {
-        ContentValues cvs = new ContentValues();
-        cvs.put(ColPlaylist.SIZE.getName(), size);
-        int r = mDb.update(TABLE_PLAYLIST,
-                           cvs,
-                           ColPlaylist.ID.getName() + " = " + plid,
-                           null);
+    addPlaylistSize(long plid, long delta) {
+        int r = execUpdStmt(UpdStmt.PLAYLIST_SIZE_ADD_BY_ID, delta, plid);
         if (r > 0)
-            markBooleanWatcherChanged(mPlTblWM);
+            mPlTblLog.add(DBChangeLog.Op.UPDATE, plid, new ColPlaylist[] { ColPlaylist.SIZE });
         return r;
     }
 
     private void
     incPlaylistSize(long plid) {
-        long sz = (Long)getPlaylistInfo(plid, ColPlaylist.SIZE);
-        eAssert(sz >= 0);
-        sz++;
-        updatePlaylistSize(plid, sz);
-    }
-
-    private void
-    decPlaylistSize(long plid) {
-        long sz = (Long)getPlaylistInfo(plid, ColPlaylist.SIZE);
-        eAssert(sz > 0);
-        sz--;
-        updatePlaylistSize(plid, sz);
+        addPlaylistSize(plid, 1);
     }
 
     // ======================================================================
@@ -459,14 +975,43 @@ UnexpectedExceptionHandler.Evidence {
     //   - used by DBManager.
     //
     // ======================================================================
+    /**
+     * @param cvs
+     * @param thumbnail
+     *   null if there is no thumbnail.
+     * @param bms
+     *   bookmarks of video.
+     * @return
+     */
     long
-    insertVideo(ContentValues cvs) {
-        long r = mDb.insert(TABLE_VIDEO, null, cvs);
+    insertVideo(ContentValues cvs, byte[] thumbnail, Bookmark[] bms) {
+        long r = -1;
+        mDb.beginTransaction();
+        try {
+            r = mDb.insert(TABLE_VIDEO, null, cvs);
+            if (r >= 0) {
+                insertTitleTokens(mDb, r, cvs.getAsString(ColVideo.NORMTITLE.getName()));
+                if (null != thumbnail && thumbnail.length > 0) {
+                    ContentValues tcvs = new ContentValues();
+                    tcvs.put(ColThumbnail.ID.getName(), r);
+                    tcvs.put(ColThumbnail.DATA.getName(), thumbnail);
+                    mDb.insert(TABLE_THUMBNAIL, null, tcvs);
+                }
+                insertBookmarks(mDb, r, bms);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
         if (r >= 0)
-            markBooleanWatcherChanged(mVidTblWM);
+            mVidTblLog.add(DBChangeLog.Op.INSERT, r, null);
         return r;
     }
 
+    /**
+     * @param bookmarks
+     *   bookmarks string. See 'getBookmarksString()'.
+     */
     long
     insertVideo(String title, String url,
                 int playtime, String author,
@@ -474,9 +1019,8 @@ UnexpectedExceptionHandler.Evidence {
                 String bookmarks) {
         ContentValues cvs = ColVideo.createContentValuesForInsert(title, url,
                                                                   playtime, author,
-                                                                  thumbnail, volume,
-                                                                  bookmarks);
-        return insertVideo(cvs);
+                                                                  volume);
+        return insertVideo(cvs, thumbnail, DBUtils.decodeBookmarks(bookmarks));
     }
 
     long
@@ -485,10 +1029,8 @@ UnexpectedExceptionHandler.Evidence {
         mDb.beginTransaction();
         try {
             id = mDb.insert(TABLE_PLAYLIST, null, cvs);
-            if (id >= 0) {
-                mDb.execSQL(DBUtils.buildTableSQL(getVideoRefTableName(id), ColVideoRef.values()));
-                markBooleanWatcherChanged(mPlTblWM);
-            }
+            if (id >= 0)
+                mPlTblLog.add(DBChangeLog.Op.INSERT, id, null);
             mDb.setTransactionSuccessful();
         } finally {
             mDb.endTransaction();
@@ -500,11 +1042,12 @@ UnexpectedExceptionHandler.Evidence {
     long
     insertVideoRef(long plid, long vid) {
         ContentValues cvs = new ContentValues();
+        cvs.put(ColVideoRef.PLAYLISTID.getName(), plid);
         cvs.put(ColVideoRef.VIDEOID.getName(), vid);
         long r = -1;
         mDb.beginTransaction();
         try {
-            r = mDb.insert(getVideoRefTableName(plid), null, cvs);
+            r = mDb.insert(TABLE_VIDEOREF, null, cvs);
             if (r >= 0) {
                 incVideoReference(vid);
                 incPlaylistSize(plid);
@@ -541,9 +1084,9 @@ UnexpectedExceptionHandler.Evidence {
         Err err = DBManager.importDatabase(exDbf);
         if (Err.NO_ERR == err) {
             // DB is successfully imported!
-            // Mark that playlist table is changed.
-            markBooleanWatcherChanged(mPlTblWM);
-            markBooleanWatcherChanged(mVidTblWM);
+            // Whole tables are changed.
+            mPlTblLog.add(DBChangeLog.Op.RESET, null, null);
+            mVidTblLog.add(DBChangeLog.Op.RESET, null, null);
         }
         return err;
     }
@@ -552,8 +1095,8 @@ UnexpectedExceptionHandler.Evidence {
     mergeDatabase(File exDbf) {
         Err err = DBManager.mergeDatabase(exDbf);
         if (Err.NO_ERR == err) {
-            markBooleanWatcherChanged(mPlTblWM);
-            markBooleanWatcherChanged(mVidTblWM);
+            mPlTblLog.add(DBChangeLog.Op.RESET, null, null);
+            mVidTblLog.add(DBChangeLog.Op.RESET, null, null);
         }
         return err;
     }
@@ -563,6 +1106,37 @@ UnexpectedExceptionHandler.Evidence {
         return DBManager.exportDatabase(exDbf);
     }
 
+    public Err
+    backupDatabase(File dir) {
+        return DBManager.backupDatabase(dir);
+    }
+
+    /**
+     * Extremely critical function.
+     * PREREQUISITE is same with {@link #importDatabase(File)}
+     * @param dir
+     */
+    public Err
+    restoreDatabase(File dir) {
+        Err err = DBManager.restoreDatabase(dir);
+        if (Err.NO_ERR == err) {
+            mPlTblLog.add(DBChangeLog.Op.RESET, null, null);
+            mVidTblLog.add(DBChangeLog.Op.RESET, null, null);
+        }
+        return err;
+    }
+
+    /**
+     * Check query plans at separate in-memory DB filled with lots of dummy videos.
+     * Current DB is not touched. See DBQueryPlan.
+     * @return
+     *   number of queries doing full scan of large table.
+     */
+    public int
+    checkQueryPlans() {
+        return DBQueryPlan.check();
+    }
+
     // ======================================================================
     //
     // Transaction
@@ -615,20 +1189,14 @@ UnexpectedExceptionHandler.Evidence {
     updatePlaylist(long plid, ColPlaylist[] fields, Object[] vs) {
         eAssert(fields.length == vs.length);
         ContentValues cvs = new ContentValues();
-        try {
-            for (int i = 0; i < fields.length; i++) {
-                Method m = cvs.getClass().getMethod("put", String.class, vs[i].getClass());
-                m.invoke(cvs, fields[i].getName(), vs[i]);
-            }
-        } catch (Exception e) {
-            eAssert(false);
-        }
+        for (int i = 0; i < fields.length; i++)
+            DBUtils.putContentValue(cvs, fields[i], vs[i]);
         int r = mDb.update(TABLE_PLAYLIST,
                            cvs,
                            ColPlaylist.ID.getName() + " = " + plid,
                            null);
         if (r > 0)
-            markBooleanWatcherChanged(mPlTblWM);
+            mPlTblLog.add(DBChangeLog.Op.UPDATE, plid, fields);
 
         return r;
     }
@@ -649,16 +1217,18 @@ UnexpectedExceptionHandler.Evidence {
                            null);
             eAssert(0 == r || 1 == r);
             if (r > 0) {
-                Cursor c = mDb.query(getVideoRefTableName(id),
+                String where = ColVideoRef.PLAYLISTID.getName() + " = " + id;
+                Cursor c = mDb.query(TABLE_VIDEOREF,
                                      new String[] { ColVideoRef.VIDEOID.getName() },
-                                     null, null, null, null, null);
+                                     where, null, null, null, null);
                 if (c.moveToFirst()) {
                     do {
                         decVideoReference(c.getLong(0));
                     } while(c.moveToNext());
                 }
-                mDb.execSQL("DROP TABLE " + getVideoRefTableName(id) + ";");
-                markBooleanWatcherChanged(mPlTblWM);
+                c.close();
+                mDb.delete(TABLE_VIDEOREF, where, null);
+                mPlTblLog.add(DBChangeLog.Op.DELETE, id, null);
             }
             mDb.setTransactionSuccessful();
         } finally {
@@ -710,6 +1280,62 @@ UnexpectedExceptionHandler.Evidence {
         return r;
     }
 
+    /**
+     * Bulk version of 'containsVideo(ytvid)'.
+     * @param ytvids
+     * @return
+     *   r[i] is true if DB contains ytvids[i].
+     */
+    public boolean[]
+    containsVideos(String[] ytvids) {
+        return containsVideos(-1, ytvids);
+    }
+
+    /**
+     * Bulk version of 'containsVideo(plid, ytvid)'.
+     * @param plid
+     *   -1 for all videos in DB.
+     * @param ytvids
+     * @return
+     *   r[i] is true if playlist contains ytvids[i].
+     */
+    public boolean[]
+    containsVideos(long plid, String[] ytvids) {
+        HashSet<String> found = new HashSet<String>();
+        String tableVideoNS = TABLE_VIDEO + "."; // NS : NameSpace
+        String from = TABLE_VIDEO;
+        String where = "";
+        if (plid >= 0) {
+            from = TABLE_VIDEOREF + " JOIN " + TABLE_VIDEO
+                   + " ON " + TABLE_VIDEOREF + "." + ColVideoRef.VIDEOID.getName()
+                            + " = " + tableVideoNS + ColVideo.ID.getName();
+            where = TABLE_VIDEOREF + "." + ColVideoRef.PLAYLISTID.getName() + " = " + plid + " AND ";
+        }
+        // Too long SQL statement is avoided.
+        for (int s = 0; s < ytvids.length; s += Policy.DB_MAX_IN_LIST_SIZE) {
+            int e = Math.min(ytvids.length, s + Policy.DB_MAX_IN_LIST_SIZE);
+            String in = "";
+            for (int i = s; i < e; i++)
+                in += (i > s? ", ": "") + DatabaseUtils.sqlEscapeString(ytvids[i]);
+            Cursor c = mDb.rawQuery("SELECT " + tableVideoNS + ColVideo.VIDEOID.getName()
+                                    + " FROM " + from
+                                    + " WHERE " + where
+                                    + tableVideoNS + ColVideo.VIDEOID.getName() + " IN (" + in + ");",
+                                    null);
+            if (c.moveToFirst()) {
+                do {
+                    found.add(c.getString(0));
+                } while (c.moveToNext());
+            }
+            c.close();
+        }
+
+        boolean[] r = new boolean[ytvids.length];
+        for (int i = 0; i < r.length; i++)
+            r[i] = found.contains(ytvids[i]);
+        return r;
+    }
+
     /**
      * Does playlist contains given video?
      * @param plid
@@ -820,21 +1446,296 @@ UnexpectedExceptionHandler.Evidence {
         return insertVideoToPlaylist(plid, ytvid, title, author, playtime, thumbnail, volume, "");
     }
 
+    /**
+     * Bulk version of 'insertVideoToPlaylist(long plid, long vid)'.
+     * All videos are inserted in one transaction.
+     * @param plid
+     * @param vids
+     *   NOTE : Video id (NOT Video reference id).
+     * @return
+     *   r[i] is result of vids[i]. Err.DUPLICATED if video is already in the playlist.
+     */
+    public Err[]
+    insertVideosToPlaylist(long plid, long[] vids) {
+        Err[] r = new Err[vids.length];
+        HashSet<Long> refs = queryVideoRefs(plid, vids);
+        long[] refVids = new long[vids.length];
+        int nrRefs = 0;
+        mDb.beginTransaction();
+        SQLiteStatement rstmt = compileInsertVideoRef();
+        try {
+            for (int i = 0; i < vids.length; i++) {
+                if (!refs.add(vids[i])) {
+                    r[i] = Err.DUPLICATED;
+                    continue;
+                }
+                insertVideoRef(rstmt, plid, vids[i]);
+                refVids[nrRefs++] = vids[i];
+                r[i] = Err.NO_ERR;
+            }
+            if (nrRefs > 0)
+                execUpdStmt(UpdStmt.PLAYLIST_SIZE_ADD_BY_ID, nrRefs, plid);
+            mDb.setTransactionSuccessful();
+        } finally {
+            rstmt.close();
+            mDb.endTransaction();
+        }
+        // Changes are logged only once.
+        if (nrRefs > 0) {
+            mVidTblLog.add(DBChangeLog.Op.UPDATE,
+                           Arrays.copyOf(refVids, nrRefs),
+                           new ColVideo[] { ColVideo.REFCOUNT });
+            mPlTblLog.add(DBChangeLog.Op.UPDATE, plid, new ColPlaylist[] { ColPlaylist.SIZE });
+        }
+        return r;
+    }
+
+    /**
+     * Bulk version of 'insertVideoToPlaylist(long plid, String ytvid, ...)'.
+     * Existing videos are looked up at once, and all videos are inserted in one transaction
+     *   with pre-compiled statements.
+     * @param plid
+     * @param args
+     * @return
+     *   r[i] is result of args[i]. Err.DUPLICATED if video is already in the playlist.
+     */
+    public Err[]
+    insertVideosToPlaylist(long plid, InsertVideoArg[] args) {
+        Err[] r = new Err[args.length];
+        // Find videos already in DB.
+        HashMap<String, Long> vidm = new HashMap<String, Long>(); // ytvid -> vid
+        for (int s = 0; s < args.length; s += Policy.DB_MAX_IN_LIST_SIZE) {
+            int e = Math.min(args.length, s + Policy.DB_MAX_IN_LIST_SIZE);
+            String in = "";
+            for (int i = s; i < e; i++)
+                in += (i > s? ", ": "") + DatabaseUtils.sqlEscapeString(args[i].ytvid);
+            Cursor c = mDb.query(TABLE_VIDEO,
+                                 new String[] { ColVideo.ID.getName(),
+                                                ColVideo.VIDEOID.getName() },
+                                 ColVideo.VIDEOID.getName() + " IN (" + in + ")",
+                                 null, null, null, null);
+            if (c.moveToFirst()) {
+                do {
+                    vidm.put(c.getString(1), c.getLong(0));
+                } while (c.moveToNext());
+            }
+            c.close();
+        }
+        long[] exvids = new long[vidm.size()];
+        int j = 0;
+        for (Long vid : vidm.values())
+            exvids[j++] = vid;
+        HashSet<Long> refs = queryVideoRefs(plid, exvids);
+
+        long[] refVids = new long[args.length];
+        long[] newVids = new long[args.length];
+        int nrRefs = 0;
+        int nrNewVideos = 0;
+        String[] vcols = null;
+        SQLiteStatement vstmt = null;
+        mDb.beginTransaction();
+        SQLiteStatement rstmt = compileInsertVideoRef();
+        SQLiteStatement tstmt = mDb.compileStatement(DBUtils.buildInsertSQL(
+                TABLE_THUMBNAIL,
+                new String[] { ColThumbnail.ID.getName(),
+                               ColThumbnail.DATA.getName() },
+                true));
+        SQLiteStatement tokstmt = mDb.compileStatement(DBUtils.buildInsertSQL(
+                TABLE_TITLETOKEN,
+                new String[] { ColTitleToken.TOKEN.getName(),
+                               ColTitleToken.VIDEOID.getName() },
+                false));
+        SQLiteStatement bmstmt = mDb.compileStatement(DBUtils.buildInsertSQL(
+                TABLE_BOOKMARK,
+                new String[] { ColBookmark.VIDEOID.getName(),
+                               ColBookmark.POS.getName(),
+                               ColBookmark.NAME.getName() },
+                false));
+        try {
+            for (int i = 0; i < args.length; i++) {
+                InsertVideoArg arg = args[i];
+                Long vid = vidm.get(arg.ytvid);
+                if (null == vid) {
+                    // This is new video
+                    String bookmarks = arg.bookmarks;
+                    if (!DBUtils.isValidBookmarksString(bookmarks))
+                        // See comments of 'insertVideoToPlaylist'
+                        bookmarks = "";
+                    ContentValues cvs = ColVideo.createContentValuesForInsert(arg.title, arg.ytvid,
+                                                                              arg.playtime, arg.author,
+                                                                              arg.volume);
+                    if (null == vstmt) {
+                        // Columns of content values are same for all videos.
+                        vcols = cvs.keySet().toArray(new String[0]);
+                        vstmt = mDb.compileStatement(DBUtils.buildInsertSQL(TABLE_VIDEO, vcols, false));
+                    }
+                    for (j = 0; j < vcols.length; j++)
+                        DatabaseUtils.bindObjectToProgram(vstmt, j + 1, cvs.get(vcols[j]));
+                    vid = vstmt.executeInsert();
+                    if (vid < 0) {
+                        r[i] = Err.UNKNOWN;
+                        continue;
+                    }
+                    insertTitleTokens(tokstmt, vid, cvs.getAsString(ColVideo.NORMTITLE.getName()));
+                    if (null != arg.thumbnail && arg.thumbnail.length > 0) {
+                        tstmt.bindLong(1, vid);
+                        tstmt.bindBlob(2, arg.thumbnail);
+                        tstmt.executeInsert();
+                    }
+                    for (Bookmark bm : DBUtils.decodeBookmarks(bookmarks)) {
+                        bmstmt.bindLong(1, vid);
+                        bmstmt.bindLong(2, bm.pos);
+                        bmstmt.bindString(3, bm.name);
+                        bmstmt.executeInsert();
+                    }
+                    vidm.put(arg.ytvid, vid);
+                    newVids[nrNewVideos++] = vid;
+                }
+
+                if (!refs.add(vid)) {
+                    r[i] = Err.DUPLICATED;
+                    continue;
+                }
+                insertVideoRef(rstmt, plid, vid);
+                refVids[nrRefs++] = vid;
+                r[i] = Err.NO_ERR;
+            }
+            if (nrRefs > 0)
+                execUpdStmt(UpdStmt.PLAYLIST_SIZE_ADD_BY_ID, nrRefs, plid);
+            mDb.setTransactionSuccessful();
+        } finally {
+            if (null != vstmt)
+                vstmt.close();
+            rstmt.close();
+            tstmt.close();
+            tokstmt.close();
+            bmstmt.close();
+            mDb.endTransaction();
+        }
+        // Changes are logged only once.
+        if (nrNewVideos > 0)
+            mVidTblLog.add(DBChangeLog.Op.INSERT, Arrays.copyOf(newVids, nrNewVideos), null);
+        if (nrRefs > 0) {
+            mVidTblLog.add(DBChangeLog.Op.UPDATE,
+                           Arrays.copyOf(refVids, nrRefs),
+                           new ColVideo[] { ColVideo.REFCOUNT });
+            mPlTblLog.add(DBChangeLog.Op.UPDATE, plid, new ColPlaylist[] { ColPlaylist.SIZE });
+        }
+        return r;
+    }
+
     public int
     updateVideoTitle(long vid, String title) {
         eAssert(null != title
                 && !title.isEmpty());
-        return updateVideo(ColVideo.ID, vid, ColVideo.TITLE, title);
+        int r = 0;
+        mDb.beginTransaction();
+        try {
+            String normtitle = SCmp.normalize(title);
+            r = updateVideo(vid,
+                            new ColVideo[] { ColVideo.TITLE, ColVideo.NORMTITLE },
+                            new Object[] { title, normtitle });
+            if (r > 0) {
+                deleteTitleTokens(mDb, vid);
+                insertTitleTokens(mDb, vid, normtitle);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        return r;
     }
 
-    public int
-    updateVideoTimePlayed(String ytvid, long time) {
-        return updateVideo(ColVideo.VIDEOID, ytvid, ColVideo.TIME_PLAYED, time);
+    /**
+     * Video is played. Time played is updated and # of played is increased.
+     * Value is written to DB later. See {@link #flushPendingWrites()}.
+     * @param ytvid
+     * @param time
+     */
+    public void
+    updateVideoPlayed(String ytvid, long time) {
+        mWriteBuf.setPlayed(ytvid, time);
     }
 
+    /**
+     * Written to DB immediately - unlike values updated during playback.
+     * Volume is changed by user rarely, and player reads it from DB.
+     * @param ytvid
+     * @param volume
+     */
     public int
     updateVideoVolume(String ytvid, int volume) {
-        return updateVideo(ColVideo.VIDEOID, ytvid, ColVideo.VOLUME, volume);
+        int r = execUpdStmt(UpdStmt.VIDEO_VOLUME_BY_VIDEOID, volume, ytvid);
+        if (r > 0)
+            mVidTblLog.add(DBChangeLog.Op.UPDATE, null, new ColVideo[] { ColVideo.VOLUME });
+        return r;
+    }
+
+    /**
+     * Write values updated during playback to DB in one transaction.
+     * This is done periodically. But, caller may request it at proper moment.
+     * (ex. player is paused or stopped.) See {@link #requestFlushPendingWrites()}.
+     */
+    public void
+    flushPendingWrites() {
+        if (mWriteBuf.isEmpty())
+            return;
+
+        int nrTimePlayed = 0;
+        // Monitor of buffer is NOT held while writing. UI thread SHOULD NOT wait for DB.
+        synchronized (mWriteBuf.flushLock) {
+            // Checked again with the lock held.
+            // Values may be flushed already, or DB may be closed while waiting the lock. See 'close()'.
+            if (null == mDb || mWriteBuf.isEmpty())
+                return;
+
+            HashMap<String, DBWriteBuffer.Pending> pendings = mWriteBuf.take();
+            boolean success = false;
+            try {
+                mDb.beginTransaction();
+                try {
+                    for (String ytvid : pendings.keySet()) {
+                        DBWriteBuffer.Pending p = pendings.get(ytvid);
+                        if (p.timePlayed >= 0)
+                            nrTimePlayed += execUpdStmt(UpdStmt.VIDEO_TIME_PLAYED_BY_VIDEOID, p.timePlayed, ytvid);
+                        if (p.nrPlayed > 0)
+                            execUpdStmt(UpdStmt.VIDEO_NRPLAYED_ADD_BY_VIDEOID, p.nrPlayed, ytvid);
+                    }
+                    mDb.setTransactionSuccessful();
+                } finally {
+                    mDb.endTransaction();
+                }
+                success = true;
+            } finally {
+                // Values are put back to buffer if they are not written.
+                mWriteBuf.flushDone(success);
+            }
+        }
+        if (DBG) P.v("Pending writes flushed : time played " + nrTimePlayed);
+
+        // Row id is not known here. But, consumers can still check updated column.
+        // NRPLAYED is not logged because there is no consumer interested in it.
+        if (nrTimePlayed > 0)
+            mVidTblLog.add(DBChangeLog.Op.UPDATE, null, new ColVideo[] { ColVideo.TIME_PLAYED });
+    }
+
+    /**
+     * Flush pending writes at background thread as soon as possible.
+     * This can be called at UI thread.
+     */
+    public void
+    requestFlushPendingWrites() {
+        mWriteBuf.requestFlush();
+    }
+
+    /**
+     * Cancel flushing scheduled at background. Used before closing DB.
+     * Pending writes are flushed by {@link #close()}.
+     * This SHOULD be called at UI thread.
+     */
+    public void
+    cancelFlushPendingWrites() {
+        mWriteBuf.cancelFlush();
     }
 
     // ----------------------------------------------------------------------
@@ -850,35 +1751,83 @@ UnexpectedExceptionHandler.Evidence {
      */
     public int
     addBookmark(long vid, String name, int position) {
-        String bmsstr = (String)getVideoInfo(vid, ColVideo.BOOKMARKS);
-        bmsstr = DBUtils.addBookmark(bmsstr, new Bookmark(name, position));
-        return updateVideo(ColVideo.ID, vid, ColVideo.BOOKMARKS, bmsstr);
+        Bookmark bm = new Bookmark(name, position);
+        // NOTE : Check strictly to keep DB safe!!!
+        eAssert(DBUtils.isValidBookmark(bm));
+        if (0 > insertBookmark(mDb, vid, bm))
+            return 0;
+        mVidTblLog.add(DBChangeLog.Op.UPDATE, vid, new ColVideo[] { ColVideo.BOOKMARKS });
+        return 1;
     }
 
+    /**
+     * Delete first matching bookmark.
+     * If there is more than one bookmark matching, only first one is deleted.
+     */
     public int
     deleteBookmark(long vid, String name, int position) {
-        String bmsstr = (String)getVideoInfo(vid, ColVideo.BOOKMARKS);
-        DBUtils.deleteBookmark(bmsstr, new Bookmark(name, position));
-        return updateVideo(ColVideo.ID, vid, ColVideo.BOOKMARKS, bmsstr);
+        String tableBookmarkId = TABLE_BOOKMARK + "." + ColBookmark.ID.getName();
+        int r = mDb.delete(TABLE_BOOKMARK,
+                           tableBookmarkId + " = (SELECT " + tableBookmarkId
+                           + " FROM " + TABLE_BOOKMARK
+                           + " WHERE " + ColBookmark.VIDEOID.getName() + " = " + vid
+                           + " AND " + ColBookmark.POS.getName() + " = " + position
+                           + " AND " + ColBookmark.NAME.getName() + " = " + DatabaseUtils.sqlEscapeString(name)
+                           + " ORDER BY " + tableBookmarkId + " LIMIT 1)",
+                           null);
+        if (r > 0)
+            mVidTblLog.add(DBChangeLog.Op.UPDATE, vid, new ColVideo[] { ColVideo.BOOKMARKS });
+        return r;
     }
 
     public int
     deleteBookmark(String ytvid, String name, int position) {
-        String bmsstr = (String)getVideoInfo(ytvid, ColVideo.BOOKMARKS);
-        bmsstr = DBUtils.deleteBookmark(bmsstr, new Bookmark(name, position));
-        return updateVideo(ColVideo.VIDEOID, ytvid, ColVideo.BOOKMARKS, bmsstr);
+        Long vid = (Long)getVideoInfo(ytvid, ColVideo.ID);
+        if (null == vid)
+            return 0;
+        return deleteBookmark(vid, name, position);
     }
 
+    /**
+     * @return
+     *   bookmarks sorted by position.
+     */
     public Bookmark[]
     getBookmarks(long vid) {
-        String bmsstr = (String)getVideoInfo(vid, ColVideo.BOOKMARKS);
-        return DBUtils.decodeBookmarks(bmsstr);
+        return queryBookmarks(mDb, vid);
     }
 
     public Bookmark[]
     getBookmarks(String ytvid) {
-        String bmsstr = (String)getVideoInfo(ytvid, ColVideo.BOOKMARKS);
-        return DBUtils.decodeBookmarks(bmsstr);
+        Long vid = (Long)getVideoInfo(ytvid, ColVideo.ID);
+        if (null == vid)
+            return new Bookmark[0];
+        return getBookmarks(vid);
+    }
+
+    /**
+     * @param vid
+     * @param from
+     *   inclusive. (ms)
+     * @param to
+     *   exclusive. (ms)
+     * @return
+     *   bookmarks in [from, to) sorted by position.
+     */
+    public Bookmark[]
+    getBookmarks(long vid, int from, int to) {
+        return queryBookmarks(mDb, vid, from, to);
+    }
+
+    /**
+     * Bookmarks are encoded to one string. This is used at sharing.
+     * See 'ColVideo.BOOKMARKS' for format.
+     * @param vid
+     * @return
+     */
+    public String
+    getBookmarksString(long vid) {
+        return DBUtils.encodeBookmarks(getBookmarks(vid));
     }
 
     // ----------------------------------------------------------------------
@@ -904,20 +1853,12 @@ UnexpectedExceptionHandler.Evidence {
      */
     public int
     deleteVideoExcept(long plid, long vid) {
-        Cursor c = queryPlaylist(new ColPlaylist[] { ColPlaylist.ID });
-        if (!c.moveToFirst()) {
-            c.close();
-            return 0;
-        }
-        // NOTE
-        // "deleteVideoFromPlaylist()" is very expensive operation.
-        // So, calling "deleteVideoFromPlaylist()" for all playlist table is very expensive.
+        // Only playlists containing the video are visited.
         int cnt = 0;
-        do {
-            if (c.getLong(0) != plid)
-                cnt += deleteVideoFrom(c.getLong(0), vid);
-        } while (c.moveToNext());
-        c.close();
+        for (long id : getPlaylistsContainVideo(vid)) {
+            if (id != plid)
+                cnt += deleteVideoFrom(id, vid);
+        }
         return cnt;
     }
 
@@ -931,6 +1872,12 @@ UnexpectedExceptionHandler.Evidence {
         return deleteVideoExcept(-1, vid);
     }
 
+    /**
+     * NOTE
+     * Values updated during playback may not be written to DB yet.
+     * Caller requiring them (ex. videos sorted by time played) SHOULD call
+     *   {@link #flushPendingWrites()} first at background thread.
+     */
     public Cursor
     queryVideos(ColVideo[] cols, ColVideo colOrderBy, boolean asc) {
         return mDb.query(TABLE_VIDEO,
@@ -951,35 +1898,136 @@ UnexpectedExceptionHandler.Evidence {
         return mDb.rawQuery(DBUtils.buildQueryVideosSQL(plid, cols, null, null, colOrderBy, asc), null);
     }
 
+    /**
+     * Same with {@code queryVideos(plid, cols, ColVideo.TITLE, true)}.
+     * But, rows are read from DB page by page while cursor is moving forward.
+     * So, time to open cursor doesn't depend on size of playlist.
+     * @param plid
+     * @param cols
+     * @return
+     */
+    public Cursor
+    queryVideosPaged(long plid, ColVideo[] cols) {
+        eAssert(cols.length > 0);
+        return new DBPagedCursor(mDb,
+                                 DBUtils.buildCountVideosSQL(plid),
+                                 DBUtils.buildQueryVideosPageSQL(plid, cols, Policy.DB_CURSOR_PAGE_SIZE),
+                                 cols);
+    }
+
     // NOTE
-    // Usually, number of videos in the playlist at most 10,000;
-    // And user usually expects so-called "sub string search" (Not token search).
-    // That's the reason why 'LIKE' is used instead of FTS3/FTS4.
-    // If performance is critical, using FTS3/FTS4 should be considered seriously.
+    // 'LIKE' with sub string can't use any index. So, it always scans whole video table.
+    // Full-text index supports token-prefix search only ('ab' finds 'abcd' but not '123abcd').
+    // But it's fast enough even if there are lots of videos.
     /**
-     *
+     * Search videos by title and author with full-text index.
+     * Results are ranked. Videos whose title matches all words come first
+     *   and videos matched by help of author follow. Each group is sorted by title.
      * @param cols
-     * @param titleLikes
-     *   sub strings to search(Not token). So, search with 'ab' may find '123abcd'.
+     * @param words
+     *   words to search. Split into tokens by 'SCmp.tokenize()'.
+     *   Each token is used as prefix and all tokens should be matched.
+     *   All videos are returned if there is no token.
      * @return
      */
     public Cursor
-    queryVideosSearchTitle(ColVideo[] cols, String[] titleLikes) {
-        String selection;
-        if (null == titleLikes || 0 == titleLikes.length)
-            selection = null;
-        else {
-            String lhv = ColVideo.TITLE.getName() + " LIKE ";
-            selection = lhv + DatabaseUtils.sqlEscapeString("%" + titleLikes[0] + "%");
-            for (int i = 1; i < titleLikes.length; i++)
-                selection += " AND " + lhv + DatabaseUtils.sqlEscapeString("%" + titleLikes[i] + "%");
+    queryVideosSearch(ColVideo[] cols, String words) {
+        String[] toks = SCmp.tokenize(null == words? "": words);
+        if (DBUtils.buildFtsPrefixMatch(toks, null).isEmpty())
+            return mDb.query(TABLE_VIDEO,
+                             DBUtils.getColNames(cols),
+                             null, null, null, null,
+                             DBUtils.buildSQLOrderBy(false, ColVideo.TITLE, true));
+
+        return mDb.rawQuery(DBUtils.buildQueryVideosSearchSQL(cols),
+                            DBUtils.buildQueryVideosSearchArgs(toks));
+    }
+
+    /**
+     * Query videos whose title shares at least one token with given title.
+     * See SCmp.tokenize() for tokens.
+     * Other videos always have negative similarity with given title.
+     * So, this is used to prune candidates of similar-titles-search.
+     * @param cols
+     * @param title
+     * @return
+     */
+    public Cursor
+    queryVideosSharingTitleToken(ColVideo[] cols, String title) {
+        return mDb.rawQuery(DBUtils.buildQueryVideosSharingTitleTokenSQL(cols, SCmp.tokenize(title)),
+                            null);
+    }
+
+    /**
+     * Replace all stored groups of videos having similar titles.
+     * @param groups
+     *   ids of videos in each group.
+     */
+    public void
+    replaceTitleDupGroups(long[][] groups) {
+        mDb.beginTransaction();
+        try {
+            mDb.delete(TABLE_TITLEDUP, null, null);
+            for (int g = 0; g < groups.length; g++) {
+                for (long vid : groups[g]) {
+                    ContentValues cvs = new ContentValues();
+                    cvs.put(ColTitleDup.GROUPID.getName(), g);
+                    cvs.put(ColTitleDup.VIDEOID.getName(), vid);
+                    mDb.insert(TABLE_TITLEDUP, null, cvs);
+                }
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
         }
-        return mDb.query(TABLE_VIDEO,
-                         DBUtils.getColNames(cols),
-                         selection,
-                         null, null, null, DBUtils.buildSQLOrderBy(false, ColVideo.TITLE, true));
     }
 
+    /**
+     * Groups that have only one video - other videos are deleted after grouping - are not included.
+     * @return
+     *   ids of videos in each group stored by 'replaceTitleDupGroups()'.
+     */
+    public long[][]
+    getTitleDupGroups() {
+        Cursor c = mDb.query(TABLE_TITLEDUP,
+                             DBUtils.getColNames(new ColTitleDup[] { ColTitleDup.GROUPID,
+                                                                     ColTitleDup.VIDEOID }),
+                             null, null, null, null,
+                             ColTitleDup.GROUPID.getName() + ", " + ColTitleDup.ID.getName());
+        ArrayList<long[]> groups = new ArrayList<long[]>();
+        try {
+            if (c.moveToFirst()) {
+                ArrayList<Long> grp = new ArrayList<Long>();
+                long gid = c.getLong(0);
+                boolean more;
+                do {
+                    grp.add(c.getLong(1));
+                    more = c.moveToNext();
+                    if (!more || gid != c.getLong(0)) {
+                        if (grp.size() > 1) {
+                            long[] vids = new long[grp.size()];
+                            int i = 0;
+                            for (Long vid : grp)
+                                vids[i++] = vid;
+                            groups.add(vids);
+                        }
+                        grp.clear();
+                        if (more)
+                            gid = c.getLong(0);
+                    }
+                } while (more);
+            }
+        } finally {
+            c.close();
+        }
+        return groups.toArray(new long[groups.size()][]);
+    }
+
+    /**
+     * NOTE
+     * Values updated during playback may not be written to DB yet.
+     * Caller requiring them SHOULD call {@link #flushPendingWrites()} first.
+     */
     public Cursor
     queryVideo(long vid, ColVideo[] cols) {
         eAssert(cols.length > 0);
@@ -1000,6 +2048,10 @@ UnexpectedExceptionHandler.Evidence {
      */
     public Object
     getVideoInfo(String ytvid, ColVideo col) {
+        Object pv = getPendingVideoInfo(ytvid, col);
+        if (null != pv)
+            return pv;
+
         Cursor c = mDb.query(TABLE_VIDEO,
                              DBUtils.getColNames(new ColVideo[] { col }),
                              ColVideo.VIDEOID.getName() + " = " + DatabaseUtils.sqlEscapeString(ytvid),
@@ -1015,23 +2067,51 @@ UnexpectedExceptionHandler.Evidence {
         }
     }
 
+    /**
+     * Thumbnail is looked up by primary key.
+     * @param vid
+     *   BaseColumns._ID of video.
+     * @return
+     *   empty array if there is no thumbnail.
+     */
+    public byte[]
+    getVideoThumbnail(long vid) {
+        return queryThumbnail(mDb, vid);
+    }
+
     public Object
     getVideoInfo(long vid, ColVideo col) {
+        // Youtube video id is also read to look up values that are not written to DB yet.
         Cursor c = mDb.query(TABLE_VIDEO,
-                             DBUtils.getColNames(new ColVideo[] { col }),
+                             DBUtils.getColNames(new ColVideo[] { col, ColVideo.VIDEOID }),
                              ColVideo.ID.getName() + " = " + vid,
                              null, null, null, null);
         eAssert(0 == c.getCount() || 1 == c.getCount());
         try {
-            if (c.moveToFirst())
-                return DBUtils.getCursorVal(c, col);
-            else
+            if (!c.moveToFirst())
                 return null;
+            Object pv = getPendingVideoInfo(c.getString(1), col);
+            return (null != pv)? pv: DBUtils.getCursorVal(c, col);
         } finally {
             c.close();
         }
     }
 
+    /**
+     * Value updated during playback but not written to DB yet.
+     * @return
+     *   null if there is no such value.
+     */
+    private Object
+    getPendingVideoInfo(String ytvid, ColVideo col) {
+        if (ColVideo.TIME_PLAYED == col) {
+            long tm = mWriteBuf.getTimePlayed(ytvid);
+            if (tm >= 0)
+                return tm;
+        }
+        return null;
+    }
+
     /**
      * Get playlist's DB-ids which contains given video.
      * @param vid
@@ -1040,73 +2120,43 @@ UnexpectedExceptionHandler.Evidence {
      */
     public long[]
     getPlaylistsContainVideo(long vid) {
-        Cursor plc = queryPlaylist(new ColPlaylist[] { ColPlaylist.ID });
-        if (!plc.moveToFirst()) {
-            plc.close();
-            return new long[0];
+        Cursor c = mDb.query(true,
+                             TABLE_VIDEOREF,
+                             new String[] { ColVideoRef.PLAYLISTID.getName() },
+                             ColVideoRef.VIDEOID.getName() + " = " + vid,
+                             null, null, null, null, null);
+        long[] pls = new long[c.getCount()];
+        int i = 0;
+        if (c.moveToFirst()) {
+            do {
+                pls[i++] = c.getLong(0);
+            } while (c.moveToNext());
         }
-
-        ArrayList<Long> pls = new ArrayList<Long>();
-        do {
-            long plid = plc.getLong(0);
-            if (containsVideo(plid, vid))
-                pls.add(plid);
-        } while (plc.moveToNext());
-        plc.close();
-
-        return Utils.convertArrayLongTolong(pls.toArray(new Long[0]));
+        c.close();
+        return pls;
     }
 
     // ----------------------------------------------------------------------
     //
-    // For watchers
+    // For change logs
     //
     // ----------------------------------------------------------------------
     /**
-     * Playlist watcher is to tell whether playlist table is changed or not.
+     * Change log of playlist table.
      * Not only inserting/deleting, but also updating values of fields.
-     * @param key
-     *   owner key of this wathcer.
+     * Consumer keeps 'version()' it has seen, and reads changes after it by 'since()'.
      */
-    public void
-    registerToPlaylistTableWatcher(Object key) {
-        registerToBooleanWatcher(mPlTblWM, key);
-    }
-
-    public boolean
-    isRegisteredToPlaylistTableWatcher(Object key) {
-        return isRegisteredToBooleanWatcher(mPlTblWM, key);
-    }
-
-    public void
-    unregisterToPlaylistTableWatcher(Object key) {
-        unregisterToBooleanWatcher(mPlTblWM, key);
-    }
-
-    public boolean
-    isPlaylistTableUpdated(Object key) {
-        return isBooleanWatcherUpdated(mPlTblWM, key);
-    }
-
-    // ------------------------------------------------------------------------
-
-    public void
-    registerToVideoTableWatcher(Object key) {
-        registerToBooleanWatcher(mVidTblWM, key);
+    public DBChangeLog
+    getPlaylistTableChangeLog() {
+        return mPlTblLog;
     }
 
-    public boolean
-    isRegisteredToVideoTableWatcher(Object key) {
-        return isRegisteredToBooleanWatcher(mVidTblWM, key);
-    }
-
-    public void
-    unregisterToVideoTableWatcher(Object key) {
-        unregisterToBooleanWatcher(mVidTblWM, key);
-    }
-
-    public boolean
-    isVideoTableUpdated(Object key) {
-        return isBooleanWatcherUpdated(mVidTblWM, key);
+    /**
+     * Change log of video table.
+     * See 'getPlaylistTableChangeLog()'.
+     */
+    public DBChangeLog
+    getVideoTableChangeLog() {
+        return mVidTblLog;
     }
 }
@@ -0,0 +1,428 @@
+/*****************************************************************************
+ *    Copyright (C) 2012, 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import free.yhc.netmbuddy.db.DB.Err;
+import free.yhc.netmbuddy.model.Policy;
+import free.yhc.netmbuddy.utils.Utils;
+
+// Incremental backup of DB file.
+//
+// Backup directory has
+//   <db>.base    : full snapshot of DB file.
+//   <db>.delta.N : pages changed since (N-1)th backup - gzipped.
+//   <db>.index   : checksums of pages at last backup.
+//
+// Unit of delta is SQLite page, not row.
+// Unchanged pages - most of them are thumbnail blobs - are not written again.
+// And no schema change is required to track changes.
+//
+// NOTE
+// DB SHOULD be closed during backup. Otherwise, pages may not be consistent.
+class DBBackup {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(DBBackup.class);
+
+    private static final int    MAGIC_INDEX         = 0x59544d49; // "YTMI"
+    private static final int    MAGIC_DELTA         = 0x59544d44; // "YTMD"
+    private static final int    END_OF_PAGES        = -1;
+
+    private static final String SQLITE_HEADER_MAGIC    = "SQLite format 3\0";
+    private static final int    SQLITE_HEADER_PAGESIZE = 16;
+
+    private static final String SUFFIX_BASE         = ".base";
+    private static final String SUFFIX_INDEX        = ".index";
+    private static final String SUFFIX_DELTA        = ".delta.";
+    private static final String SUFFIX_TMP          = ".tmp";
+
+    private static class Index {
+        int     pageSize;
+        long    dbLength;
+        int     nrDeltas;
+        long[]  sums;
+    }
+
+    private static File
+    getBaseFile(File dir, String name) {
+        return new File(dir, name + SUFFIX_BASE);
+    }
+
+    private static File
+    getIndexFile(File dir, String name) {
+        return new File(dir, name + SUFFIX_INDEX);
+    }
+
+    private static File
+    getDeltaFile(File dir, String name, int n) {
+        return new File(dir, name + SUFFIX_DELTA + n);
+    }
+
+    private static void
+    checkInterrupted() throws InterruptedException {
+        if (Thread.currentThread().isInterrupted())
+            throw new InterruptedException();
+    }
+
+    /**
+     * @return
+     *   page size of SQLite DB file. -1 if it's not valid SQLite DB file.
+     */
+    private static int
+    readPageSize(File dbf) throws IOException {
+        byte[] hdr = new byte[SQLITE_HEADER_PAGESIZE + 2];
+        RandomAccessFile raf = new RandomAccessFile(dbf, "r");
+        try {
+            raf.readFully(hdr);
+        } catch (EOFException e) {
+            return -1;
+        } finally {
+            raf.close();
+        }
+
+        if (!SQLITE_HEADER_MAGIC.equals(new String(hdr, 0, SQLITE_HEADER_PAGESIZE, "ISO-8859-1")))
+            return -1;
+        // Big-endian 2 bytes. Value 1 means 65536.
+        int sz = ((hdr[SQLITE_HEADER_PAGESIZE] & 0xff) << 8) | (hdr[SQLITE_HEADER_PAGESIZE + 1] & 0xff);
+        return (1 == sz)? 65536: sz;
+    }
+
+    /**
+     * Read one page. Short page at the end of file is filled with 0.
+     * @return
+     *   false at the end of file.
+     */
+    private static boolean
+    readPage(InputStream is, byte[] page) throws IOException {
+        int off = 0;
+        while (off < page.length) {
+            int r = is.read(page, off, page.length - off);
+            if (r < 0)
+                break;
+            off += r;
+        }
+        if (0 == off)
+            return false;
+        if (off < page.length)
+            Arrays.fill(page, off, page.length, (byte)0);
+        return true;
+    }
+
+    private static long
+    checksum(byte[] page, CRC32 crc, Adler32 adler) {
+        // Two different 32-bit checksums are used to make collision extremely rare.
+        crc.reset();
+        adler.reset();
+        crc.update(page);
+        adler.update(page);
+        return (crc.getValue() << 32) | adler.getValue();
+    }
+
+    private static int
+    nrPages(long length, int pageSize) {
+        return (int)((length + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * @return
+     *   null if index doesn't exist or is invalid.
+     */
+    private static Index
+    readIndex(File f) {
+        if (!f.exists())
+            return null;
+
+        DataInputStream dis = null;
+        try {
+            dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+            if (MAGIC_INDEX != dis.readInt())
+                return null;
+            Index idx = new Index();
+            idx.pageSize = dis.readInt();
+            idx.dbLength = dis.readLong();
+            idx.nrDeltas = dis.readInt();
+            int nr = dis.readInt();
+            if (idx.pageSize <= 0
+                || nr != nrPages(idx.dbLength, idx.pageSize)
+                || idx.nrDeltas < 0)
+                return null;
+            idx.sums = new long[nr];
+            for (int i = 0; i < nr; i++)
+                idx.sums[i] = dis.readLong();
+            return idx;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (null != dis) {
+                try {
+                    dis.close();
+                } catch (IOException ignored) { }
+            }
+        }
+    }
+
+    private static void
+    writeIndex(File f, Index idx) throws IOException {
+        File tmp = new File(f.getAbsolutePath() + SUFFIX_TMP);
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            dos.writeInt(MAGIC_INDEX);
+            dos.writeInt(idx.pageSize);
+            dos.writeLong(idx.dbLength);
+            dos.writeInt(idx.nrDeltas);
+            dos.writeInt(idx.sums.length);
+            for (long sum : idx.sums)
+                dos.writeLong(sum);
+        } finally {
+            dos.close();
+        }
+        // Index is replaced at once.
+        if (!tmp.renameTo(f)) {
+            tmp.delete();
+            throw new IOException("Fail to rename index");
+        }
+    }
+
+    private static void
+    deleteDeltas(File dir, String name) {
+        int n = 1;
+        File f;
+        while ((f = getDeltaFile(dir, name, n++)).exists())
+            f.delete();
+    }
+
+    private static long[]
+    computeChecksums(File dbf, int pageSize) throws IOException, InterruptedException {
+        long[] sums = new long[nrPages(dbf.length(), pageSize)];
+        byte[] page = new byte[pageSize];
+        CRC32 crc = new CRC32();
+        Adler32 adler = new Adler32();
+        InputStream is = new BufferedInputStream(new FileInputStream(dbf));
+        try {
+            for (int i = 0; i < sums.length && readPage(is, page); i++) {
+                checkInterrupted();
+                sums[i] = checksum(page, crc, adler);
+            }
+        } finally {
+            is.close();
+        }
+        return sums;
+    }
+
+    private static void
+    backupFull(File dbf, File dir, int pageSize) throws IOException, InterruptedException {
+        String name = dbf.getName();
+        File fIndex = getIndexFile(dir, name);
+        File fBase = getBaseFile(dir, name);
+        // Backup without index is regarded as broken one. So, index is deleted first.
+        fIndex.delete();
+        File tmp = new File(fBase.getAbsolutePath() + SUFFIX_TMP);
+        Utils.copyFile(tmp, dbf);
+        fBase.delete();
+        if (!tmp.renameTo(fBase)) {
+            tmp.delete();
+            throw new IOException("Fail to rename base snapshot");
+        }
+        deleteDeltas(dir, name);
+
+        Index idx = new Index();
+        idx.pageSize = pageSize;
+        idx.dbLength = dbf.length();
+        idx.nrDeltas = 0;
+        idx.sums = computeChecksums(dbf, pageSize);
+        writeIndex(fIndex, idx);
+    }
+
+    private static void
+    backupDelta(File dbf, File dir, Index idx) throws IOException, InterruptedException {
+        String name = dbf.getName();
+        long dbLength = dbf.length();
+        long[] sums = new long[nrPages(dbLength, idx.pageSize)];
+        byte[] page = new byte[idx.pageSize];
+        CRC32 crc = new CRC32();
+        Adler32 adler = new Adler32();
+
+        File fDelta = getDeltaFile(dir, name, idx.nrDeltas + 1);
+        File tmp = new File(fDelta.getAbsolutePath() + SUFFIX_TMP);
+        int nrChanged = 0;
+        InputStream is = new BufferedInputStream(new FileInputStream(dbf));
+        try {
+            DataOutputStream dos = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(tmp)));
+            try {
+                dos.writeInt(MAGIC_DELTA);
+                dos.writeInt(idx.pageSize);
+                dos.writeLong(dbLength);
+                for (int i = 0; i < sums.length && readPage(is, page); i++) {
+                    checkInterrupted();
+                    sums[i] = checksum(page, crc, adler);
+                    if (i < idx.sums.length && sums[i] == idx.sums[i])
+                        continue;
+                    dos.writeInt(i);
+                    dos.write(page);
+                    nrChanged++;
+                }
+                dos.writeInt(END_OF_PAGES);
+            } finally {
+                dos.close();
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        } catch (InterruptedException e) {
+            tmp.delete();
+            throw e;
+        } finally {
+            is.close();
+        }
+
+        if (DBG) P.v("Delta backup : " + nrChanged + "/" + sums.length + " pages changed");
+        if (0 == nrChanged && dbLength == idx.dbLength) {
+            // Nothing changed since last backup.
+            tmp.delete();
+            return;
+        }
+
+        fDelta.delete();
+        if (!tmp.renameTo(fDelta)) {
+            tmp.delete();
+            throw new IOException("Fail to rename delta");
+        }
+        idx.dbLength = dbLength;
+        idx.nrDeltas++;
+        idx.sums = sums;
+        writeIndex(getIndexFile(dir, name), idx);
+    }
+
+    private static void
+    applyDelta(RandomAccessFile raf, File fDelta, int pageSize) throws IOException, InterruptedException {
+        DataInputStream dis = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(fDelta))));
+        try {
+            if (MAGIC_DELTA != dis.readInt()
+                || pageSize != dis.readInt())
+                throw new IOException("Invalid delta : " + fDelta.getName());
+            long dbLength = dis.readLong();
+            byte[] page = new byte[pageSize];
+            int pgno;
+            while (END_OF_PAGES != (pgno = dis.readInt())) {
+                checkInterrupted();
+                dis.readFully(page);
+                raf.seek((long)pgno * pageSize);
+                raf.write(page);
+            }
+            raf.setLength(dbLength);
+        } finally {
+            dis.close();
+        }
+    }
+
+    /**
+     * Backup DB file to the directory.
+     * Full snapshot is taken if there is no valid previous backup or
+     *   # of deltas reaches {@link Policy#DB_BACKUP_FULL_INTERVAL}.
+     * Otherwise, only pages changed since last backup are saved.
+     * @param dbf
+     *   DB file. DB SHOULD be closed.
+     * @param dir
+     *   backup directory.
+     */
+    static Err
+    backup(File dbf, File dir) {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            return Err.IO_FILE;
+
+        try {
+            int pageSize = readPageSize(dbf);
+            if (pageSize <= 0)
+                return Err.INVALID_DB;
+
+            Index idx = readIndex(getIndexFile(dir, dbf.getName()));
+            if (null == idx
+                || pageSize != idx.pageSize
+                || idx.nrDeltas >= Policy.DB_BACKUP_FULL_INTERVAL
+                || !getBaseFile(dir, dbf.getName()).exists())
+                backupFull(dbf, dir, pageSize);
+            else
+                backupDelta(dbf, dir, idx);
+        } catch (FileNotFoundException e) {
+            return Err.IO_FILE;
+        } catch (IOException e) {
+            return Err.IO_FILE;
+        } catch (InterruptedException e) {
+            return Err.INTERRUPTED;
+        }
+        return Err.NO_ERR;
+    }
+
+    /**
+     * Rebuild DB file from backup - base snapshot and deltas.
+     * @param dir
+     *   backup directory.
+     * @param name
+     *   name of backed-up DB file.
+     * @param outDbf
+     *   file where restored DB is written to.
+     */
+    static Err
+    restore(File dir, String name, File outDbf) {
+        Index idx = readIndex(getIndexFile(dir, name));
+        File fBase = getBaseFile(dir, name);
+        if (null == idx || !fBase.exists())
+            return Err.IO_FILE;
+
+        try {
+            Utils.copyFile(outDbf, fBase);
+            RandomAccessFile raf = new RandomAccessFile(outDbf, "rw");
+            try {
+                for (int n = 1; n <= idx.nrDeltas; n++)
+                    applyDelta(raf, getDeltaFile(dir, name, n), idx.pageSize);
+            } finally {
+                raf.close();
+            }
+        } catch (FileNotFoundException e) {
+            outDbf.delete();
+            return Err.IO_FILE;
+        } catch (IOException e) {
+            outDbf.delete();
+            return Err.INVALID_DB;
+        } catch (InterruptedException e) {
+            outDbf.delete();
+            return Err.INTERRUPTED;
+        }
+        return Err.NO_ERR;
+    }
+}
@@ -0,0 +1,168 @@
+/*****************************************************************************
+ *    Copyright (C) 2012, 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.db;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import free.yhc.netmbuddy.utils.Utils;
+
+// Change log of one DB table.
+// Each change has monotonic version of the table.
+// Consumer keeps version it has seen, and reads changes after it later.
+// Only recent changes are kept. If changes consumer wants are already dropped,
+//   consumer should assume that whole table is changed.
+public class DBChangeLog {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(DBChangeLog.class);
+
+    public static enum Op {
+        INSERT,
+        DELETE,
+        UPDATE,
+        // Whole table may be changed. (ex. importing DB)
+        RESET
+    }
+
+    public static class Change {
+        public final long       version;
+        public final Op         op;
+        // BaseColumns._ID of changed rows. null if rows are not known.
+        public final long[]     ids;
+        // Updated columns. Valid only for Op.UPDATE.
+        public final DB.Col[]   cols;
+
+        Change(long aVersion, Op aOp, long[] aIds, DB.Col[] aCols) {
+            version = aVersion;
+            op = aOp;
+            ids = aIds;
+            cols = aCols;
+        }
+
+        /**
+         * @param id
+         * @return
+         *   true if row of 'id' may be changed.
+         */
+        public boolean
+        mayAffect(long id) {
+            if (null == ids)
+                return true;
+            for (long i : ids) {
+                if (i == id)
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * @param cs
+         *   columns that caller is interested in.
+         * @return
+         *   true if one of 'cs' may be changed.
+         *   Always true for operations other than Op.UPDATE.
+         */
+        public boolean
+        mayAffect(DB.Col[] cs) {
+            if (Op.UPDATE != op || null == cols)
+                return true;
+            for (DB.Col c : cs) {
+                for (DB.Col col : cols) {
+                    if (c == col)
+                        return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final int                   mCapacity;
+    private final LinkedList<Change>    mLog = new LinkedList<Change>();
+    private long                        mVersion = 0;
+
+    DBChangeLog(int capacity) {
+        mCapacity = capacity;
+    }
+
+    synchronized void
+    add(Op op, long[] ids, DB.Col[] cols) {
+        mLog.addLast(new Change(++mVersion, op, ids, cols));
+        if (mLog.size() > mCapacity)
+            mLog.removeFirst();
+    }
+
+    void
+    add(Op op, long id, DB.Col[] cols) {
+        add(op, new long[] { id }, cols);
+    }
+
+    /**
+     * @return
+     *   current version of table.
+     */
+    public synchronized long
+    version() {
+        return mVersion;
+    }
+
+    /**
+     * @param version
+     *   version that caller has already seen.
+     * @return
+     *   changes newer than 'version' in order. Empty array if there is no change.
+     *   null if some of them are already dropped from the log.
+     *   In this case, caller should assume that whole table is changed.
+     */
+    public synchronized Change[]
+    since(long version) {
+        if (version >= mVersion)
+            return new Change[0];
+        if (mLog.isEmpty()
+            || mLog.getFirst().version > version + 1)
+            return null;
+        Change[] cs = new Change[(int)(mVersion - version)];
+        int i = cs.length;
+        Iterator<Change> itr = mLog.descendingIterator();
+        while (i > 0)
+            cs[--i] = itr.next();
+        return cs;
+    }
+
+    /**
+     * Helper function.
+     * @param cs
+     *   value from 'since()'
+     * @param cols
+     *   columns that caller is interested in.
+     * @return
+     *   true if one of changes may affect one of 'cols'.
+     */
+    public static boolean
+    mayAffect(Change[] cs, DB.Col[] cols) {
+        if (null == cs)
+            return true;
+        for (Change c : cs) {
+            if (c.mayAffect(cols))
+                return true;
+        }
+        return false;
+    }
+}
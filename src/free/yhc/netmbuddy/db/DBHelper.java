@@ -83,10 +83,10 @@ public class DBHelper {
         checkDup(YTVideoFeed.Entry[] entries) {
             // TODO
             // Should I check "entries[i].available" flag???
-            boolean[] r = new boolean[entries.length];
-            for (int i = 0; i < r.length; i++)
-                r[i] = DB.get().containsVideo(entries[i].media.videoId);
-            return r;
+            String[] ytvids = new String[entries.length];
+            for (int i = 0; i < ytvids.length; i++)
+                ytvids[i] = entries[i].media.videoId;
+            return DB.get().containsVideos(ytvids);
         }
 
         private void
@@ -84,6 +84,16 @@ class DBHistory {
     // ----------------------------------------------------------------------------------------------------------------
     private static FieldNType sFnTBookmarksT =      new FieldNType("bookmarks",       "text");
 
+    // ----------------------------------------------------------------------------------------------------------------
+    // Newly added at version 4
+    // ----------------------------------------------------------------------------------------------------------------
+    private static FieldNType sFnTNormtitleT =      new FieldNType("normtitle",       "text");
+
+    // ----------------------------------------------------------------------------------------------------------------
+    // Newly added at version 5
+    // ----------------------------------------------------------------------------------------------------------------
+    private static FieldNType sFnTNormauthorT =     new FieldNType("normauthor",      "text");
+
 
     // [3Dim][2Dim][1Dim]
     // 1st dimension : FieldNType lists
@@ -218,6 +228,114 @@ class DBHistory {
                 // Below field are newly added
                 sFnTBookmarksT,
             }
+        },
+
+        // DB version 4
+        // Title token and title dup tables are newly added.
+        // 'normtitle' is added to video table.
+        {
+            // Playlist table
+            {
+                sFnTTitleT,
+                sFnTDescriptionT,
+                sFnTThumbnailB,
+                sFnTSizeI,
+                sFnT_idI,
+                sFnTThumbnail_vidT,
+                sFnTReserved0T,
+                sFnTReserved1T,
+                sFnTReserved2I,
+                sFnTReserved3I,
+                sFnTReserved4B,
+            },
+
+            // Video table
+            {
+                sFnTTitleT,
+                sFnTDescriptionT,
+                sFnTVideoidT,
+                sFnTGenreT,
+                sFnTArtistT,
+                sFnTAlbumT,
+                sFnTThumbnailB,
+                sFnTPlaytimeI,
+                sFnTVolumeI,
+                sFnTRateI,
+                sFnTTime_addI,
+                sFnTTime_playedI,
+                sFnTRefcountI,
+                sFnT_idI,
+                sFnTAuthorT,
+                sFnTNrplayedI,
+                sFnTRelvideosfeedT,
+                sFnTReserved0T,
+                sFnTReserved1T,
+                sFnTReserved2T,
+                sFnTReserved3I,
+                sFnTReserved4I,
+                sFnTReserved5I,
+                sFnTReserved6B,
+                sFnTBookmarksT,
+                sFnTNormtitleT,
+            }
+        },
+
+        // DB version 5
+        // Per-playlist video reference tables are merged into one table.
+        // Reference table has copy of video title to read videos of playlist sorted by title with index.
+        // Index for Youtube video id is added.
+        // Thumbnail table is newly added. 'thumbnail' of video table is not used anymore.
+        // Bookmark table is newly added. 'bookmarks' of video table is not used anymore.
+        // Full-text index(FTS virtual table) for title and author of video is newly added.
+        // Normalized author is added to video table for full-text index.
+        {
+            // Playlist table
+            {
+                sFnTTitleT,
+                sFnTDescriptionT,
+                sFnTThumbnailB,
+                sFnTSizeI,
+                sFnT_idI,
+                sFnTThumbnail_vidT,
+                sFnTReserved0T,
+                sFnTReserved1T,
+                sFnTReserved2I,
+                sFnTReserved3I,
+                sFnTReserved4B,
+            },
+
+            // Video table
+            {
+                sFnTTitleT,
+                sFnTDescriptionT,
+                sFnTVideoidT,
+                sFnTGenreT,
+                sFnTArtistT,
+                sFnTAlbumT,
+                sFnTThumbnailB,
+                sFnTPlaytimeI,
+                sFnTVolumeI,
+                sFnTRateI,
+                sFnTTime_addI,
+                sFnTTime_playedI,
+                sFnTRefcountI,
+                sFnT_idI,
+                sFnTAuthorT,
+                sFnTNrplayedI,
+                sFnTRelvideosfeedT,
+                sFnTReserved0T,
+                sFnTReserved1T,
+                sFnTReserved2T,
+                sFnTReserved3I,
+                sFnTReserved4I,
+                sFnTReserved5I,
+                sFnTReserved6B,
+                sFnTBookmarksT,
+                sFnTNormtitleT,
+
+                // Below fields are newly added.
+                sFnTNormauthorT,
+            }
         }
     };
 
@@ -23,18 +23,18 @@ package free.yhc.netmbuddy.db;
 import static free.yhc.netmbuddy.utils.Utils.eAssert;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.BaseColumns;
 import free.yhc.netmbuddy.R;
 import free.yhc.netmbuddy.db.DB.Err;
 import free.yhc.netmbuddy.db.DBHistory.FieldNType;
@@ -45,6 +45,12 @@ class DBManager {
     private static final boolean DBG = false;
     private static final Utils.Logger P = new Utils.Logger(DBManager.class);
 
+    // Schema name of external DB attached for merging, and temporary tables used for it.
+    private static final String MERGE_DB                = "mergedb";
+    private static final String MERGE_TMP_PLAYLIST      = "temp.merge_playlist";
+    private static final String MERGE_TMP_VIDEO_NAME    = "merge_video";
+    private static final String MERGE_TMP_VIDEO         = "temp." + MERGE_TMP_VIDEO_NAME;
+
     private static final String sTableAndroidMetadata = "android_metadata";
     private static final String sStmtAndroidMetadata = "CREATE TABLE android_metadata (locale TEXT)";
 
@@ -113,29 +119,17 @@ class DBManager {
 
     private static Err
     copy(File fDst, File fSrc) {
-        Err err = Err.NO_ERR;
-        FileInputStream fis = null;
-        FileOutputStream fos = null;
         try {
-            fis = new FileInputStream(fSrc);
-            fos = new FileOutputStream(fDst);
-            Utils.copy(fos, fis);
+            Utils.copyFile(fDst, fSrc);
         } catch (FileNotFoundException e) {
-            err = Err.IO_FILE;
+            return Err.IO_FILE;
         } catch (InterruptedException e) {
             // Unexpected interrupt!!
-            err = Err.INTERRUPTED;
+            return Err.INTERRUPTED;
         } catch (IOException e) {
-            err = Err.IO_FILE;
-        } finally {
-            try {
-                if (null != fis)
-                    fis.close();
-                if (null != fos)
-                    fos.close();
-            } catch (IOException ignored) { }
+            return Err.IO_FILE;
         }
-        return err;
+        return Err.NO_ERR;
     }
 
     // NOTE
@@ -218,6 +212,34 @@ class DBManager {
         return err;
     }
 
+    private static void
+    deleteWalFiles(File dbf) {
+        new File(dbf.getAbsolutePath() + "-wal").delete();
+        new File(dbf.getAbsolutePath() + "-shm").delete();
+    }
+
+    /**
+     * Journal mode is persistent at DB file in case of write-ahead-logging.
+     * DB file in WAL mode can't be opened by SQLite older than 3.7.0 (Android 3.0).
+     * So, change it to default rollback journal mode.
+     */
+    private static void
+    setRollbackJournalMode(File dbf) {
+        SQLiteDatabase db = null;
+        try {
+            db = SQLiteDatabase.openDatabase(dbf.getAbsolutePath(), null, SQLiteDatabase.OPEN_READWRITE);
+            Cursor c = db.rawQuery("PRAGMA journal_mode = DELETE;", null);
+            c.moveToFirst();
+            c.close();
+        } catch (SQLiteException e) {
+            // Ignore it. Exported file is still valid at device supporting write-ahead-logging.
+            if (DBG) P.w("Fail to change journal mode of exported DB : " + e.getMessage());
+        } finally {
+            if (null != db)
+                db.close();
+        }
+    }
+
     private static Err
     copyAndUpgrade(File tempExDb, File exDbf) {
         Err err = copy(tempExDb, exDbf);
@@ -266,6 +288,9 @@ class DBManager {
                 DB.get().open();
                 return Err.IO_FILE;
             }
+            // There is no write-ahead-log file after DB is closed normally.
+            // But, stale one SHOULD NOT be applied to imported DB.
+            deleteWalFiles(inDbf);
 
             err = copy(inDbf, exDbf);
             if (Err.NO_ERR != err) {
@@ -283,71 +308,188 @@ class DBManager {
     }
 
 
-    private static Err
-    doMergeDatabase(SQLiteDatabase exDb) {
-        DB db = DB.get();
-        Cursor excPl = exDb.query(DB.getPlaylistTableName(),
-                                  DBUtils.getColNames(ColPlaylist.values()),
-                                  null, null, null, null, null);
-        if (!excPl.moveToFirst()) {
-            // Empty DB.
-            // So, nothing to merge!
-            excPl.close();
-            return Err.NO_ERR;
-        }
-
-        final int plColiTitle = excPl.getColumnIndex(ColPlaylist.TITLE.getName());
-        final int plColiId = excPl.getColumnIndex(ColPlaylist.ID.getName());
-        do {
-            int i = 0;
-            String plTitle = excPl.getString(plColiTitle);
-            while (db.containsPlaylist(plTitle)) {
-                i++;
-                plTitle = excPl.getString(plColiTitle)+ "_" + Utils.getResText(R.string.merge) + i;
+    /**
+     * Build column list of "INSERT INTO ... (columns) SELECT values ..."
+     * @param cols
+     *   BaseColumns._ID is excluded.
+     * @param sel
+     *   true for values of 'SELECT'. Otherwise columns of 'INSERT'.
+     * @param prefix
+     *   table name or alias for values of 'SELECT'. ex. "v."
+     * @param overrides
+     *   pairs of (column, value-expression). Value is used instead of column of source table.
+     */
+    private static String
+    buildMergeColumns(DB.Col[] cols, boolean sel, String prefix, Object[] overrides) {
+        String s = "";
+        for (DB.Col col : cols) {
+            if (BaseColumns._ID.equals(col.getName()))
+                continue; // ID SHOULD NOT be copied.
+            String v = col.getName();
+            if (sel) {
+                v = prefix + v;
+                for (int i = 0; i < overrides.length; i += 2) {
+                    if (overrides[i] == col)
+                        v = (String)overrides[i + 1];
+                }
             }
+            s += (s.isEmpty()? "": ", ") + v;
+        }
+        return s;
+    }
 
-            // Playlist title is chosen.
-            ContentValues cvs = DBUtils.copyContent(excPl, ColPlaylist.values());
-            cvs.put(ColPlaylist.TITLE.getName(), plTitle);
-            cvs.put(ColPlaylist.SIZE.getName(), 0);
-            long inPlid = db.insertPlaylist(cvs);
-
-            // Scan all video references belongs to this playlist
-            Cursor excVref = exDb.query(DB.getVideoRefTableName(excPl.getLong(plColiId)),
-                    DBUtils.getColNames(new ColVideoRef[] { ColVideoRef.VIDEOID }),
-                          null, null, null, null, null);
-
-            if (!excVref.moveToFirst()) {
-                // Empty playlist! Let's move to next.
-                excVref.close();
-                continue;
-            }
+    private static boolean
+    containsPlaylist(SQLiteDatabase db, String title) {
+        Cursor c = db.query(DB.getPlaylistTableName(),
+                            new String[] { ColPlaylist.ID.getName() },
+                            ColPlaylist.TITLE.getName() + " = " + DatabaseUtils.sqlEscapeString(title),
+                            null, null, null, null);
+        try {
+            return c.getCount() > 0;
+        } finally {
+            c.close();
+        }
+    }
 
-            do {
-                // get Youtube video id string of external database.
-                Cursor excV = exDb.query(DB.getVideoTableName(),
-                                         DBUtils.getColNames(ColVideo.values()),
-                                         ColVideo.ID.getName() + " = " + excVref.getLong(0),
-                                         null, null, null, null);
-                if (!excV.moveToFirst())
-                    eAssert(false);
-
-                final int vColiVid = excV.getColumnIndex(ColVideo.VIDEOID.getName());
-
-                Long vid = (Long)db.getVideoInfo(excV.getString(vColiVid), ColVideo.ID);
-                if (null == vid) {
-                    // This is new video!
-                    cvs = DBUtils.copyContent(excV, ColVideo.values());
-                    cvs.put(ColVideo.REFCOUNT.getName(), 0);
-                    vid = db.insertVideo(cvs);
+    /**
+     * External DB SHOULD be attached as 'MERGE_DB' and caller SHOULD be in transaction.
+     * Only playlist titles are handled one by one. (# of playlists is small.)
+     * Videos, references and their dependents are copied by set-based SQL statements.
+     */
+    private static Err
+    doMergeDatabase(SQLiteDatabase db) {
+        final String ex = MERGE_DB + ".";
+        final String vid = ColVideo.ID.getName();
+        final String ytvid = ColVideo.VIDEOID.getName();
+        final String refPlid = ColVideoRef.PLAYLISTID.getName();
+        final String refVid = ColVideoRef.VIDEOID.getName();
+
+        // ------------------------------------------------------------------
+        // Playlists
+        // ------------------------------------------------------------------
+        if (0 == DatabaseUtils.queryNumEntries(db, ex + DB.getPlaylistTableName()))
+            return Err.NO_ERR; // Empty DB. So, nothing to merge!
+
+        // exid : id at external DB, inid : id at current DB
+        db.execSQL("CREATE TEMP TABLE " + MERGE_TMP_PLAYLIST
+                   + " (exid INTEGER PRIMARY KEY, inid INTEGER);");
+        SQLiteStatement plstmt = db.compileStatement(
+                "INSERT INTO " + DB.getPlaylistTableName()
+                + " (" + buildMergeColumns(ColPlaylist.values(), false, null, null) + ")"
+                + " SELECT " + buildMergeColumns(ColPlaylist.values(), true, "",
+                                                 new Object[] { ColPlaylist.TITLE, "?",
+                                                                ColPlaylist.SIZE,  "0" })
+                + " FROM " + ex + DB.getPlaylistTableName()
+                + " WHERE " + ColPlaylist.ID.getName() + " = ?;");
+        SQLiteStatement mapstmt = db.compileStatement(
+                "INSERT INTO " + MERGE_TMP_PLAYLIST + " (exid, inid) VALUES (?, ?);");
+        Cursor c = db.rawQuery("SELECT " + ColPlaylist.ID.getName() + ", " + ColPlaylist.TITLE.getName()
+                               + " FROM " + ex + DB.getPlaylistTableName() + ";",
+                               null);
+        try {
+            while (c.moveToNext()) {
+                int i = 0;
+                String plTitle = c.getString(1);
+                while (containsPlaylist(db, plTitle)) {
+                    i++;
+                    plTitle = c.getString(1) + "_" + Utils.getResText(R.string.merge) + i;
                 }
-                db.insertVideoRef(inPlid, vid);
-
-            } while (excVref.moveToNext());
-            excVref.close();
-        } while (excPl.moveToNext());
-        excPl.close();
+                // Playlist title is chosen.
+                plstmt.bindString(1, plTitle);
+                plstmt.bindLong(2, c.getLong(0));
+                long inPlid = plstmt.executeInsert();
+                if (inPlid < 0)
+                    return Err.UNKNOWN;
+                mapstmt.bindLong(1, c.getLong(0));
+                mapstmt.bindLong(2, inPlid);
+                mapstmt.executeInsert();
+            }
+        } finally {
+            c.close();
+            plstmt.close();
+            mapstmt.close();
+        }
 
+        // ------------------------------------------------------------------
+        // Videos referenced by external playlists
+        // ------------------------------------------------------------------
+        // isnew : 1 if video is newly inserted to current DB.
+        db.execSQL("CREATE TEMP TABLE " + MERGE_TMP_VIDEO
+                   + " (exid INTEGER PRIMARY KEY, ytvid TEXT, inid INTEGER, isnew INTEGER DEFAULT 0);");
+        db.execSQL("CREATE INDEX " + MERGE_TMP_VIDEO + "_ytvid ON " + MERGE_TMP_VIDEO_NAME + " (ytvid);");
+        db.execSQL("INSERT INTO " + MERGE_TMP_VIDEO + " (exid, ytvid)"
+                   + " SELECT " + vid + ", " + ytvid + " FROM " + ex + DB.getVideoTableName()
+                   + " WHERE " + vid + " IN (SELECT " + refVid + " FROM " + ex + DB.getVideoRefTableName() + ");");
+        // Existing videos are matched by Youtube video id.
+        final String updateInid
+            = "UPDATE " + MERGE_TMP_VIDEO + " SET inid ="
+              + " (SELECT v." + vid + " FROM " + DB.getVideoTableName() + " v"
+              + "  WHERE v." + ytvid + " = " + MERGE_TMP_VIDEO_NAME + ".ytvid"
+              + "  ORDER BY v." + vid + " LIMIT 1)";
+        db.execSQL(updateInid + ";");
+        // External DB may have duplicated Youtube video id (by unknown bug). Only first one is inserted.
+        db.execSQL("UPDATE " + MERGE_TMP_VIDEO + " SET isnew = 1"
+                   + " WHERE inid IS NULL"
+                   + " AND exid = (SELECT MIN(m.exid) FROM " + MERGE_TMP_VIDEO + " m"
+                   + "             WHERE m.ytvid = " + MERGE_TMP_VIDEO_NAME + ".ytvid);");
+        db.execSQL("INSERT INTO " + DB.getVideoTableName()
+                   + " (" + buildMergeColumns(ColVideo.values(), false, null, null) + ")"
+                   + " SELECT " + buildMergeColumns(ColVideo.values(), true, "v.",
+                                                    new Object[] { ColVideo.REFCOUNT,  "0",
+                                                                   ColVideo.BOOKMARKS, "''" }) // See ColBookmark
+                   + " FROM " + ex + DB.getVideoTableName() + " v"
+                   + " JOIN " + MERGE_TMP_VIDEO + " m ON v." + vid + " = m.exid"
+                   + " WHERE m.isnew = 1"
+                   + " ORDER BY v." + vid + ";");
+        db.execSQL(updateInid + " WHERE inid IS NULL;");
+
+        // Dependents of new videos. (Full-text index is updated by trigger.)
+        final String fromNew = " FROM " + MERGE_TMP_VIDEO + " m JOIN " + ex;
+        db.execSQL("INSERT OR REPLACE INTO " + DB.getThumbnailTableName()
+                   + " (" + ColThumbnail.ID.getName() + ", " + ColThumbnail.DATA.getName() + ")"
+                   + " SELECT m.inid, t." + ColThumbnail.DATA.getName()
+                   + fromNew + DB.getThumbnailTableName() + " t ON t." + ColThumbnail.ID.getName() + " = m.exid"
+                   + " WHERE m.isnew = 1;");
+        db.execSQL("INSERT INTO " + DB.getTitleTokenTableName()
+                   + " (" + ColTitleToken.TOKEN.getName() + ", " + ColTitleToken.VIDEOID.getName() + ")"
+                   + " SELECT t." + ColTitleToken.TOKEN.getName() + ", m.inid"
+                   + fromNew + DB.getTitleTokenTableName() + " t ON t." + ColTitleToken.VIDEOID.getName() + " = m.exid"
+                   + " WHERE m.isnew = 1;");
+        db.execSQL("INSERT INTO " + DB.getBookmarkTableName()
+                   + " (" + ColBookmark.VIDEOID.getName()
+                   + ", " + ColBookmark.POS.getName()
+                   + ", " + ColBookmark.NAME.getName() + ")"
+                   + " SELECT m.inid, b." + ColBookmark.POS.getName() + ", b." + ColBookmark.NAME.getName()
+                   + fromNew + DB.getBookmarkTableName() + " b ON b." + ColBookmark.VIDEOID.getName() + " = m.exid"
+                   + " WHERE m.isnew = 1"
+                   + " ORDER BY b." + ColBookmark.ID.getName() + ";");
+
+        // ------------------------------------------------------------------
+        // References
+        // ------------------------------------------------------------------
+        // Order of references in the playlist is kept.
+        // Duplicated references (from duplicated external videos) are merged into one.
+        db.execSQL("INSERT INTO " + DB.getVideoRefTableName() + " (" + refPlid + ", " + refVid + ")"
+                   + " SELECT p.inid, m.inid"
+                   + " FROM " + ex + DB.getVideoRefTableName() + " r"
+                   + " JOIN " + MERGE_TMP_PLAYLIST + " p ON p.exid = r." + refPlid
+                   + " JOIN " + MERGE_TMP_VIDEO + " m ON m.exid = r." + refVid
+                   + " GROUP BY p.inid, m.inid"
+                   + " ORDER BY MIN(r." + ColVideoRef.ID.getName() + ");");
+        db.execSQL("UPDATE " + DB.getVideoTableName()
+                   + " SET " + ColVideo.REFCOUNT.getName() + " = " + ColVideo.REFCOUNT.getName() + " +"
+                   + " (SELECT COUNT(*) FROM " + DB.getVideoRefTableName() + " r"
+                   + "  WHERE r." + refVid + " = " + DB.getVideoTableName() + "." + vid
+                   + "  AND r." + refPlid + " IN (SELECT inid FROM " + MERGE_TMP_PLAYLIST + "))"
+                   + " WHERE " + vid + " IN (SELECT inid FROM " + MERGE_TMP_VIDEO + ");");
+        db.execSQL("UPDATE " + DB.getPlaylistTableName()
+                   + " SET " + ColPlaylist.SIZE.getName() + " ="
+                   + " (SELECT COUNT(*) FROM " + DB.getVideoRefTableName() + " r"
+                   + "  WHERE r." + refPlid + " = " + DB.getPlaylistTableName() + "." + ColPlaylist.ID.getName() + ")"
+                   + " WHERE " + ColPlaylist.ID.getName() + " IN (SELECT inid FROM " + MERGE_TMP_PLAYLIST + ");");
+
+        db.execSQL("DROP TABLE " + MERGE_TMP_VIDEO + ";");
+        db.execSQL("DROP TABLE " + MERGE_TMP_PLAYLIST + ";");
         return Err.NO_ERR;
     }
 
@@ -384,45 +526,59 @@ class DBManager {
         if (null == exDbf)
             return Err.IO_FILE;
 
+        // NOTE
+        // Merging is done at separate connection opened on the DB file.
+        // SQLiteDatabase disables write-ahead-logging permanently once other DB is attached to it.
+        // So, DB is closed during merging like importing, and opened again with write-ahead-logging.
+        DB.get().close();
+        SQLiteDatabase db = null;
         try {
-            SQLiteDatabase exDb = null;
             try {
-                exDb = SQLiteDatabase.openDatabase(exDbf.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
+                db = SQLiteDatabase.openDatabase(Utils.getAppContext().getDatabasePath(DB.getName()).getAbsolutePath(),
+                                                 null,
+                                                 SQLiteDatabase.OPEN_READWRITE);
+                db.execSQL("ATTACH DATABASE " + DatabaseUtils.sqlEscapeString(exDbf.getAbsolutePath())
+                           + " AS " + MERGE_DB + ";");
             } catch (SQLiteException e) {
                 return Err.INVALID_DB;
             }
 
-            DB db = DB.get();
             // Merging Algorithm
             // -----------------
             //
-            // * Merge playlist and reference tables
+            // * Merge playlist table
             //   : [if] there is duplicated playlist
             //     retry again and again with modified name - ex. title_#_
             //
-            // * For each merged playlist, merge reference tables
-            //   : scan vidoes
-            //     - [if] there is duplicated video - based on Youtube video ID - in the DB
+            // * Merge videos referenced by external playlists
+            //   : [if] there is duplicated video - based on Youtube video ID - in the DB
             //         => reference to the video's DB ID (reference count of this video should be increased.)
             //       [else] add the video to the current DB and reference to it.
+            //
+            // * Merge reference table, and then re-calculate reference counts and playlist sizes.
 
             // Merging SHOULD BE ONE-TRANSACTION!
             db.beginTransaction();
             try {
-                err = doMergeDatabase(exDb);
+                err = doMergeDatabase(db);
                 if (Err.NO_ERR != err)
                     return err;
 
                 db.setTransactionSuccessful();
+            } catch (SQLiteException e) {
+                err = Err.INVALID_DB;
             } finally {
-                exDb.close();
                 db.endTransaction();
             }
         } finally {
+            // Attached DB and temporary tables go away with the connection.
+            if (null != db)
+                db.close();
             exDbf.delete();
+            DB.get().open();
         }
 
-        return Err.NO_ERR;
+        return err;
     }
 
     static Err
@@ -433,11 +589,7 @@ class DBManager {
 
         File inDbf = Utils.getAppContext().getDatabasePath(DB.getName());
         try {
-            FileInputStream fis = new FileInputStream(inDbf);
-            FileOutputStream fos = new FileOutputStream(exDbf);
-            Utils.copy(fos, fis);
-            fis.close();
-            fos.close();
+            Utils.copyFile(exDbf, inDbf);
         } catch (FileNotFoundException e) {
             err = Err.IO_FILE;
         } catch (InterruptedException e) {
@@ -452,7 +604,53 @@ class DBManager {
             }
         }
 
+        // Exported DB may be imported by device that doesn't support write-ahead-logging.
+        setRollbackJournalMode(exDbf);
+
         DB.get().open(); // open again.
         return Err.NO_ERR;
     }
+
+    /**
+     * Backup DB incrementally. See {@link DBBackup}.
+     * @param dir
+     *   backup directory.
+     */
+    static Err
+    backupDatabase(File dir) {
+        // Backup SHOULD be done from consistent DB file.
+        // All write-ahead-logs are check-pointed when DB is closed.
+        DB.get().close();
+        try {
+            return DBBackup.backup(Utils.getAppContext().getDatabasePath(DB.getName()), dir);
+        } finally {
+            DB.get().open(); // open again.
+        }
+    }
+
+    /**
+     * Extremely critical function.
+     * PREREQUISITE is same with {@link #importDatabase(File)}
+     * @param dir
+     *   backup directory.
+     */
+    static Err
+    restoreDatabase(File dir) {
+        File fTmp;
+        try {
+            fTmp = File.createTempFile("restoreDBTempFile", null, new File(Policy.APPDATA_TMPDIR));
+        } catch (IOException e) {
+            return Err.IO_FILE;
+        }
+
+        try {
+            Err err = DBBackup.restore(dir, DB.getName(), fTmp);
+            if (Err.NO_ERR != err)
+                return err;
+            // Restored DB is verified and imported like external DB.
+            return importDatabase(fTmp);
+        } finally {
+            fTmp.delete();
+        }
+    }
 }
@@ -0,0 +1,243 @@
+/*****************************************************************************
+ *    Copyright (C) 2012, 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.db;
+
+import static free.yhc.netmbuddy.utils.Utils.eAssert;
+
+import java.util.ArrayList;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import free.yhc.netmbuddy.model.Policy;
+import free.yhc.netmbuddy.utils.Utils;
+
+// Cursor reading rows page by page with keyset pagination.
+// SQLiteCursor fills it's window from the beginning of query result.
+// So, opening and jumping far in cursor of large table takes long time.
+// This cursor reads only one small page whenever cursor approaches end of loaded rows.
+//
+// Rows of each page are copied to memory and SQLite cursor is closed immediately.
+// So, only small columns (not blob) should be selected.
+//
+// NOTE
+// Total count is read at creation (and requery) time, and it is NOT changed until next requery.
+// ListView doesn't allow count to be changed without notification.
+// If rows are deleted after counting, missing rows are filled with empty(null) values,
+//   and cursor notifies that contents are changed. Then, adapter requeries it.
+class DBPagedCursor extends AbstractCursor {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(DBPagedCursor.class);
+
+    private final SQLiteDatabase    mDb;
+    // SQL of total count.
+    private final String            mCountSql;
+    // SQL of one page. See DBUtils.buildQueryVideosPageSQL()
+    private final String            mPageSql;
+    private final DB.Col[]          mCols;
+    private final String[]          mColNames;
+    private final ArrayList<Object[]> mRows = new ArrayList<Object[]>();
+    private int                     mCount;
+    // Key of last loaded row : (title, _id)
+    private String                  mLastTitle;
+    private long                    mLastId;
+    private boolean                 mChangeNotified;
+
+    private final Runnable mNotifyChange = new Runnable() {
+        @Override
+        public void
+        run() {
+            if (!isClosed())
+                onChange(false);
+        }
+    };
+
+    DBPagedCursor(SQLiteDatabase db, String countSql, String pageSql, DB.Col[] cols) {
+        mDb = db;
+        mCountSql = countSql;
+        mPageSql = pageSql;
+        mCols = cols;
+        mColNames = DBUtils.getColNames(cols);
+        // First page is loaded here. Creating cursor is usually done at background.
+        load();
+    }
+
+    private void
+    load() {
+        mRows.clear();
+        mLastTitle = "";
+        mLastId = -1;
+        mChangeNotified = false;
+        Cursor c = mDb.rawQuery(mCountSql, null);
+        try {
+            mCount = c.moveToFirst()? c.getInt(0): 0;
+        } finally {
+            c.close();
+        }
+        loadNextPage();
+    }
+
+    private boolean
+    isAllLoaded() {
+        return mRows.size() >= mCount;
+    }
+
+    private void
+    loadNextPage() {
+        Cursor c = mDb.rawQuery(mPageSql, new String[] { mLastTitle,
+                                                         mLastTitle,
+                                                         String.valueOf(mLastId) });
+        int nr = 0;
+        try {
+            // Key columns are appended after selected columns.
+            int coliTitle = mCols.length;
+            int coliId = mCols.length + 1;
+            while (c.moveToNext() && !isAllLoaded()) {
+                Object[] row = new Object[mCols.length];
+                for (int i = 0; i < mCols.length; i++) {
+                    if (c.isNull(i))
+                        row[i] = null;
+                    else if ("integer".equals(mCols[i].getType()))
+                        row[i] = c.getLong(i);
+                    else
+                        row[i] = c.getString(i);
+                }
+                mRows.add(row);
+                mLastTitle = c.getString(coliTitle);
+                mLastId = c.getLong(coliId);
+                nr++;
+            }
+        } finally {
+            c.close();
+        }
+
+        if (nr < Policy.DB_CURSOR_PAGE_SIZE && !isAllLoaded()) {
+            // Rows are deleted after counting.
+            // Count SHOULD NOT be changed. Rest rows are filled with empty values.
+            if (DBG) P.w("Rows are changed after counting : " + mRows.size() + "/" + mCount);
+            while (!isAllLoaded())
+                mRows.add(new Object[mCols.length]);
+            if (!mChangeNotified) {
+                mChangeNotified = true;
+                // Observers SHOULD NOT be notified in the middle of moving cursor.
+                Utils.getUiHandler().post(mNotifyChange);
+            }
+        }
+        if (DBG) P.v("page loaded : " + nr + " (" + mRows.size() + "/" + mCount + ")");
+    }
+
+    private Object
+    get(int column) {
+        eAssert(0 <= column && column < mCols.length);
+        return mRows.get(getPosition())[column];
+    }
+
+    @Override
+    public boolean
+    onMove(int oldPosition, int newPosition) {
+        // Next page is read ahead before cursor reaches the end of loaded rows.
+        while (!isAllLoaded()
+               && newPosition + Policy.DB_CURSOR_PAGE_SIZE / 2 >= mRows.size())
+            loadNextPage();
+        return newPosition < mRows.size();
+    }
+
+    @Override
+    public boolean
+    requery() {
+        load();
+        return super.requery();
+    }
+
+    @Override
+    public void
+    close() {
+        Utils.getUiHandler().removeCallbacks(mNotifyChange);
+        super.close();
+    }
+
+    @Override
+    public int
+    getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String[]
+    getColumnNames() {
+        return mColNames;
+    }
+
+    @Override
+    public String
+    getString(int column) {
+        Object v = get(column);
+        return (null == v)? null: v.toString();
+    }
+
+    @Override
+    public short
+    getShort(int column) {
+        return (short)getLong(column);
+    }
+
+    @Override
+    public int
+    getInt(int column) {
+        return (int)getLong(column);
+    }
+
+    @Override
+    public long
+    getLong(int column) {
+        Object v = get(column);
+        if (null == v)
+            return 0;
+        else if (v instanceof Long)
+            return (Long)v;
+        else
+            return Long.parseLong(v.toString());
+    }
+
+    @Override
+    public float
+    getFloat(int column) {
+        return (float)getDouble(column);
+    }
+
+    @Override
+    public double
+    getDouble(int column) {
+        Object v = get(column);
+        if (null == v)
+            return 0;
+        else if (v instanceof Long)
+            return (Long)v;
+        else
+            return Double.parseDouble(v.toString());
+    }
+
+    @Override
+    public boolean
+    isNull(int column) {
+        return null == get(column);
+    }
+}
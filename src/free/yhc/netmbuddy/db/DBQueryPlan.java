@@ -0,0 +1,368 @@
+/*****************************************************************************
+ *    Copyright (C) 2012, 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.db;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+import free.yhc.netmbuddy.model.Policy;
+import free.yhc.netmbuddy.scmp.SCmp;
+import free.yhc.netmbuddy.utils.Utils;
+
+// Debugging helper to find queries that don't use index.
+// In-memory DB is built with same DDL with real DB (See DB.createTables())
+//   and filled with lots of dummy videos and playlists.
+// Then, representative queries - built in the same way as DB - are checked with
+//   'EXPLAIN QUERY PLAN', and full scan of tables other than playlist table is reported.
+// Time to run each query is also reported.
+// So, index regression can be found without DB having lots of videos.
+//
+// Real DB is never touched. See DB.checkQueryPlans().
+class DBQueryPlan {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(DBQueryPlan.class);
+
+    // Number of dummy videos.
+    private static final int    NR_VIDEOS       = 100000;
+    // Number of dummy playlists.
+    // Videos are spread to playlists except for the large one.
+    private static final int    NR_PLAYLISTS    = 20;
+    // 1 / LARGE_PLAYLIST_RATIO of all videos are in the large playlist.
+    private static final int    LARGE_PLAYLIST_RATIO = 10;
+
+    // Words used to make dummy title and author.
+    private static final String[] sWords = new String[] {
+        "love", "song", "live", "official", "music", "video", "remix", "acoustic",
+        "night", "day", "summer", "rain", "dance", "piano", "cover", "ballad",
+        "concert", "mv", "hd", "lyrics", "the", "of", "in", "my",
+        "사랑", "노래", "라이브", "Über", "Café", "Ärger", "Москва", "東京",
+    };
+
+    private static final ColVideo[] sVideoListCols = new ColVideo[] {
+        ColVideo.ID,
+        ColVideo.VIDEOID,
+        ColVideo.TITLE,
+        ColVideo.AUTHOR,
+        ColVideo.VOLUME,
+        ColVideo.PLAYTIME,
+    };
+
+    private static class Query {
+        final String    name;
+        final String    sql;
+        final String[]  args;
+        Query(String aName, String aSql, String[] aArgs) {
+            name = aName;
+            sql = aSql;
+            args = aArgs;
+        }
+    }
+
+    /**
+     * Is this step of query plan full scan of large table?
+     * Detail string of plan step is like below (differs by SQLite version)
+     *   "SCAN TABLE video (~1000000 rows)", "SCAN v", "SEARCH v USING INDEX ..."
+     */
+    private static boolean
+    isFullScan(String detail) {
+        if (!detail.startsWith("SCAN "))
+            return false;
+        return !(detail.contains("VIRTUAL TABLE")         // full-text index
+                 || detail.contains("SUBQUERY")           // temporary result
+                 || detail.contains("CONSTANT ROW")
+                 // Playlist table is small enough. All playlists are listed at once.
+                 || detail.matches("SCAN (TABLE )?" + DB.getPlaylistTableName() + "\\b.*"));
+    }
+
+    /**
+     * @return
+     *   detail strings of each step of query plan.
+     */
+    static String[]
+    explain(SQLiteDatabase db, String sql, String[] args) {
+        ArrayList<String> details = new ArrayList<String>();
+        Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            int coli = c.getColumnIndex("detail");
+            while (c.moveToNext())
+                details.add(c.getString(coli));
+        } finally {
+            c.close();
+        }
+        return details.toArray(new String[details.size()]);
+    }
+
+    private static String
+    buildDummyText(Random rand, int nrWords) {
+        String s = "";
+        for (int i = 0; i < nrWords; i++)
+            s += (i > 0? " ": "") + sWords[rand.nextInt(sWords.length)];
+        return s;
+    }
+
+    private static long
+    insertDummyPlaylist(SQLiteDatabase db, String title, int size) {
+        ContentValues cvs = ColPlaylist.createContentValuesForInsert(title);
+        cvs.put(ColPlaylist.SIZE.getName(), size);
+        return db.insert(DB.getPlaylistTableName(), null, cvs);
+    }
+
+    /**
+     * Fill DB with dummy videos, playlists, thumbnails, bookmarks and title tokens.
+     * @return
+     *   id of the large playlist.
+     */
+    private static long
+    seed(SQLiteDatabase db) {
+        // Fixed seed. Same DB is built at every run.
+        Random rand = new Random(0);
+        int nrLarge = NR_VIDEOS / LARGE_PLAYLIST_RATIO;
+        long largePlid = insertDummyPlaylist(db, "large", nrLarge);
+        long[] plids = new long[NR_PLAYLISTS];
+        for (int i = 0; i < NR_PLAYLISTS; i++)
+            plids[i] = insertDummyPlaylist(db, "playlist" + i, (NR_VIDEOS - nrLarge) / NR_PLAYLISTS);
+
+        String[] vcols = null;
+        SQLiteStatement vstmt = null;
+        SQLiteStatement rstmt = db.compileStatement(DBUtils.buildInsertSQL(
+                DB.getVideoRefTableName(),
+                new String[] { ColVideoRef.PLAYLISTID.getName(),
+                               ColVideoRef.VIDEOID.getName() },
+                false));
+        SQLiteStatement tstmt = db.compileStatement(DBUtils.buildInsertSQL(
+                DB.getThumbnailTableName(),
+                new String[] { ColThumbnail.ID.getName(),
+                               ColThumbnail.DATA.getName() },
+                true));
+        SQLiteStatement tokstmt = db.compileStatement(DBUtils.buildInsertSQL(
+                DB.getTitleTokenTableName(),
+                new String[] { ColTitleToken.TOKEN.getName(),
+                               ColTitleToken.VIDEOID.getName() },
+                false));
+        SQLiteStatement bmstmt = db.compileStatement(DBUtils.buildInsertSQL(
+                DB.getBookmarkTableName(),
+                new String[] { ColBookmark.VIDEOID.getName(),
+                               ColBookmark.POS.getName(),
+                               ColBookmark.NAME.getName() },
+                false));
+        byte[] thumbnail = new byte[1024];
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < NR_VIDEOS; i++) {
+                ContentValues cvs = ColVideo.createContentValuesForInsert(
+                        buildDummyText(rand, 2 + rand.nextInt(6)),
+                        String.format("%011d", i),
+                        60 + rand.nextInt(600),
+                        buildDummyText(rand, 1 + rand.nextInt(2)),
+                        DB.INVALID_VOLUME);
+                if (null == vstmt) {
+                    vcols = cvs.keySet().toArray(new String[0]);
+                    vstmt = db.compileStatement(DBUtils.buildInsertSQL(DB.getVideoTableName(), vcols, false));
+                }
+                for (int j = 0; j < vcols.length; j++)
+                    DatabaseUtils.bindObjectToProgram(vstmt, j + 1, cvs.get(vcols[j]));
+                long vid = vstmt.executeInsert();
+                DB.insertTitleTokens(tokstmt, vid, cvs.getAsString(ColVideo.NORMTITLE.getName()));
+
+                tstmt.bindLong(1, vid);
+                tstmt.bindBlob(2, thumbnail);
+                tstmt.executeInsert();
+
+                if (0 == i % 10) {
+                    bmstmt.bindLong(1, vid);
+                    bmstmt.bindLong(2, rand.nextInt(60000));
+                    bmstmt.bindString(3, "bookmark");
+                    bmstmt.executeInsert();
+                }
+
+                rstmt.bindLong(1, (i < nrLarge)? largePlid: plids[i % NR_PLAYLISTS]);
+                rstmt.bindLong(2, vid);
+                rstmt.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            if (null != vstmt)
+                vstmt.close();
+            rstmt.close();
+            tstmt.close();
+            tokstmt.close();
+            bmstmt.close();
+        }
+        return largePlid;
+    }
+
+    private static String
+    buildQuery(String table, DB.Col[] cols, String where, String orderBy) {
+        return SQLiteQueryBuilder.buildQueryString(false, table, DBUtils.getColNames(cols),
+                                                   where, null, null, orderBy, null);
+    }
+
+    private static Query[]
+    buildQueries(SQLiteDatabase db, long plid) {
+        // Sample arguments from the middle of the playlist - page query starts from there.
+        String title = "";
+        long vid = 0;
+        Cursor c = db.rawQuery("SELECT " + ColVideoRef.TITLE.getName()
+                               + ", " + ColVideoRef.VIDEOID.getName()
+                               + " FROM " + DB.getVideoRefTableName()
+                               + " WHERE " + ColVideoRef.PLAYLISTID.getName() + " = " + plid
+                               + " ORDER BY " + ColVideoRef.TITLE.getName()
+                               + ", " + ColVideoRef.VIDEOID.getName()
+                               + " LIMIT 1 OFFSET " + (NR_VIDEOS / LARGE_PLAYLIST_RATIO / 2),
+                               null);
+        try {
+            if (c.moveToFirst()) {
+                title = c.getString(0);
+                vid = c.getLong(1);
+            }
+        } finally {
+            c.close();
+        }
+        String ytvid = DatabaseUtils.stringForQuery(db, "SELECT IFNULL(MAX(" + ColVideo.VIDEOID.getName() + "), '')"
+                                                        + " FROM " + DB.getVideoTableName()
+                                                        + " WHERE " + ColVideo.ID.getName() + " = " + vid, null);
+        // Same with DB.queryVideosSearch() and DB.queryVideosSharingTitleToken().
+        String[] toks = SCmp.tokenize(title);
+        if (0 == toks.length)
+            toks = new String[] { "a" };
+        String refWhere = ColVideoRef.PLAYLISTID.getName() + " = " + plid
+                          + " AND " + ColVideoRef.VIDEOID.getName() + " = " + vid;
+
+        return new Query[] {
+            new Query("videos of playlist",
+                      DBUtils.buildQueryVideosSQL(plid, sVideoListCols, null, null, ColVideo.TITLE, true),
+                      null),
+            new Query("video of playlist by youtube id",
+                      DBUtils.buildQueryVideosSQL(plid, new ColVideo[] { ColVideo.ID },
+                                                  ColVideo.VIDEOID, ytvid, null, false),
+                      null),
+            new Query("page of videos of playlist",
+                      DBUtils.buildQueryVideosPageSQL(plid, sVideoListCols, Policy.DB_CURSOR_PAGE_SIZE),
+                      new String[] { title, title, String.valueOf(vid) }),
+            new Query("count of videos of playlist",
+                      DBUtils.buildCountVideosSQL(plid),
+                      null),
+            new Query("search videos",
+                      DBUtils.buildQueryVideosSearchSQL(sVideoListCols),
+                      DBUtils.buildQueryVideosSearchArgs(toks)),
+            new Query("videos sharing title token",
+                      DBUtils.buildQueryVideosSharingTitleTokenSQL(sVideoListCols, toks),
+                      null),
+            new Query("video by id",
+                      buildQuery(DB.getVideoTableName(), sVideoListCols,
+                                 ColVideo.ID.getName() + " = " + vid, null),
+                      null),
+            new Query("video by youtube id",
+                      buildQuery(DB.getVideoTableName(), new ColVideo[] { ColVideo.ID },
+                                 ColVideo.VIDEOID.getName() + " = " + DatabaseUtils.sqlEscapeString(ytvid), null),
+                      null),
+            new Query("thumbnail of video",
+                      DBUtils.buildQueryThumbnailSQL(vid),
+                      null),
+            new Query("bookmarks of video",
+                      DBUtils.buildQueryBookmarksSQL(vid, 0, Integer.MAX_VALUE),
+                      null),
+            new Query("reference of video in playlist",
+                      buildQuery(DB.getVideoRefTableName(), new ColVideoRef[] { ColVideoRef.ID },
+                                 refWhere, null),
+                      null),
+            new Query("playlists containing video",
+                      SQLiteQueryBuilder.buildQueryString(true, DB.getVideoRefTableName(),
+                                                          new String[] { ColVideoRef.PLAYLISTID.getName() },
+                                                          ColVideoRef.VIDEOID.getName() + " = " + vid,
+                                                          null, null, null, null),
+                      null),
+            new Query("playlists",
+                      buildQuery(DB.getPlaylistTableName(), ColPlaylist.values(),
+                                 null, ColPlaylist.TITLE.getName()),
+                      null),
+        };
+    }
+
+    /**
+     * Check query plans of representative queries and report them to log.
+     * @return
+     *   number of queries doing full scan of large table.
+     */
+    private static int
+    verify(SQLiteDatabase db, long plid) {
+        int nrBad = 0;
+        for (Query q : buildQueries(db, plid)) {
+            String[] details = explain(db, q.sql, q.args);
+            boolean bad = false;
+            for (String d : details)
+                bad |= isFullScan(d);
+
+            long t = System.nanoTime();
+            Cursor c = db.rawQuery(q.sql, q.args);
+            int nr = 0;
+            try {
+                while (c.moveToNext())
+                    nr++;
+            } finally {
+                c.close();
+            }
+            t = (System.nanoTime() - t) / 1000; // us
+
+            String plan = TextUtils.join(" | ", details);
+            String lat = (t / 1000) + "." + String.format("%03d", t % 1000) + "ms";
+            if (bad) {
+                nrBad++;
+                P.w("FULL SCAN : " + q.name + " : " + lat + ", " + nr + " rows\n  " + plan + "\n  " + q.sql);
+            } else
+                P.i(q.name + " : " + lat + ", " + nr + " rows\n  " + plan);
+        }
+        return nrBad;
+    }
+
+    /**
+     * Build in-memory DB having same schema with real DB, fill it with dummy data
+     *   and check query plans of representative queries against it.
+     * This takes long time. Do NOT call this at UI thread.
+     * @return
+     *   number of queries doing full scan of large table. 0 means OK.
+     */
+    static int
+    check() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            long t = System.currentTimeMillis();
+            DB.createTables(db);
+            long plid = seed(db);
+            P.i("Dummy DB is ready : " + NR_VIDEOS + " videos, "
+                + (System.currentTimeMillis() - t) + "ms");
+            int nrBad = verify(db, plid);
+            if (nrBad > 0)
+                P.w("Queries doing full scan : " + nrBad);
+            return nrBad;
+        } finally {
+            db.close();
+        }
+    }
+}
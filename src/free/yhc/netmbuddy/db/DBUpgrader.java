@@ -20,8 +20,11 @@
 
 package free.yhc.netmbuddy.db;
 
+import android.content.ContentValues;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import free.yhc.netmbuddy.db.DB.Col;
+import free.yhc.netmbuddy.scmp.SCmp;
 import free.yhc.netmbuddy.utils.Utils;
 
 class DBUpgrader {
@@ -71,6 +74,118 @@ class DBUpgrader {
         db.execSQL(buildAddColumnSQL(DB.getVideoTableName(), ColVideo.BOOKMARKS));
     }
 
+    private static void
+    upgradeTo4(SQLiteDatabase db) {
+        db.execSQL(buildAddColumnSQL(DB.getVideoTableName(), ColVideo.NORMTITLE));
+        DB.createTitleTokenTable(db);
+        DB.createTitleDupTable(db);
+        // Fill normalized title and build index for existing videos.
+        Cursor vc = db.query(DB.getVideoTableName(),
+                            new String[] { ColVideo.ID.getName(), ColVideo.TITLE.getName() },
+                            null, null, null, null, null);
+        try {
+            if (vc.moveToFirst()) {
+                do {
+                    long vid = vc.getLong(0);
+                    String normtitle = SCmp.normalize(vc.getString(1));
+                    ContentValues cvs = new ContentValues();
+                    cvs.put(ColVideo.NORMTITLE.getName(), normtitle);
+                    db.update(DB.getVideoTableName(),
+                              cvs,
+                              ColVideo.ID.getName() + " = " + vid,
+                              null);
+                    DB.insertTitleTokens(db, vid, normtitle);
+                } while (vc.moveToNext());
+            }
+        } finally {
+            vc.close();
+        }
+    }
+
+    private static void
+    upgradeTo5(SQLiteDatabase db) {
+        // Until version 4, each playlist has it's own video reference table - 'videoref_<playlist id>'.
+        final String tableVideoRefPrefix = "videoref_";
+        DB.createVideoIndex(db);
+
+        // Fill normalized author before building full-text index from it.
+        db.execSQL(buildAddColumnSQL(DB.getVideoTableName(), ColVideo.NORMAUTHOR));
+        Cursor ac = db.query(DB.getVideoTableName(),
+                             new String[] { ColVideo.ID.getName(), ColVideo.AUTHOR.getName() },
+                             "length(" + ColVideo.AUTHOR.getName() + ") > 0",
+                             null, null, null, null);
+        try {
+            if (ac.moveToFirst()) {
+                do {
+                    ContentValues cvs = new ContentValues();
+                    cvs.put(ColVideo.NORMAUTHOR.getName(), SCmp.normalize(ac.getString(1)));
+                    db.update(DB.getVideoTableName(),
+                              cvs,
+                              ColVideo.ID.getName() + " = " + ac.getLong(0),
+                              null);
+                } while (ac.moveToNext());
+            }
+        } finally {
+            ac.close();
+        }
+        // Full-text index for title and author.
+        DB.createVideoFtsTable(db);
+
+        // Move thumbnail data out of video table.
+        DB.createThumbnailTable(db);
+        db.execSQL("INSERT INTO " + DB.getThumbnailTableName()
+                   + " (" + ColThumbnail.ID.getName() + ", " + ColThumbnail.DATA.getName() + ")"
+                   + " SELECT " + ColVideo.ID.getName() + ", " + ColVideo.THUMBNAIL.getName()
+                   + " FROM " + DB.getVideoTableName()
+                   + " WHERE length(" + ColVideo.THUMBNAIL.getName() + ") > 0;");
+        db.execSQL("UPDATE " + DB.getVideoTableName()
+                   + " SET " + ColVideo.THUMBNAIL.getName() + " = X'';");
+
+        // Move bookmarks string of video table to bookmark table.
+        DB.createBookmarkTable(db);
+        Cursor vc = db.query(DB.getVideoTableName(),
+                            new String[] { ColVideo.ID.getName(), ColVideo.BOOKMARKS.getName() },
+                            "length(" + ColVideo.BOOKMARKS.getName() + ") > 0",
+                            null, null, null, null);
+        try {
+            if (vc.moveToFirst()) {
+                do {
+                    DB.Bookmark[] bms = DBUtils.decodeBookmarks(vc.getString(1));
+                    // Invalid bookmarks string is ignored.
+                    if (null != bms)
+                        DB.insertBookmarks(db, vc.getLong(0), bms);
+                } while (vc.moveToNext());
+            }
+        } finally {
+            vc.close();
+        }
+        db.execSQL("UPDATE " + DB.getVideoTableName()
+                   + " SET " + ColVideo.BOOKMARKS.getName() + " = '';");
+
+        DB.createVideoRefTable(db);
+        Cursor c = db.query(DB.getPlaylistTableName(),
+                            new String[] { ColPlaylist.ID.getName() },
+                            null, null, null, null, null);
+        try {
+            if (c.moveToFirst()) {
+                do {
+                    long plid = c.getLong(0);
+                    String oldTable = tableVideoRefPrefix + plid;
+                    // Order of references in the playlist is kept.
+                    db.execSQL("INSERT INTO " + DB.getVideoRefTableName()
+                               + " (" + ColVideoRef.PLAYLISTID.getName()
+                               + ", " + ColVideoRef.VIDEOID.getName() + ")"
+                               + " SELECT " + plid + ", " + ColVideoRef.VIDEOID.getName()
+                               + " FROM " + oldTable
+                               + " ORDER BY " + ColVideoRef.ID.getName() + ";");
+                    db.execSQL("DROP TABLE " + oldTable + ";");
+                } while (c.moveToNext());
+            }
+        } finally {
+            c.close();
+        }
+    }
+
     boolean
     upgrade() {
         boolean success = true;
@@ -86,6 +201,14 @@ class DBUpgrader {
                 case 2:
                     upgradeTo3(mDb);
                     break;
+
+                case 3:
+                    upgradeTo4(mDb);
+                    break;
+
+                case 4:
+                    upgradeTo5(mDb);
+                    break;
                 }
                 dbv++;
             }
@@ -24,7 +24,7 @@ import static free.yhc.netmbuddy.utils.Utils.eAssert;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
-import android.provider.BaseColumns;
+import android.database.sqlite.SQLiteQueryBuilder;
 import free.yhc.netmbuddy.db.DB.Col;
 import free.yhc.netmbuddy.utils.Utils;
 
@@ -45,25 +45,6 @@ class DBUtils {
         return strs;
     }
 
-    static ContentValues
-    copyContent(Cursor c, DB.Col[] cols) {
-        ContentValues cvs = new ContentValues();
-        for (Col col : cols) {
-            if (BaseColumns._ID.equals(col.getName()))
-                    continue; // ID SHOULD NOT be copied.
-
-            if ("text".equals(col.getType())) {
-                cvs.put(col.getName(), c.getString(c.getColumnIndex(col.getName())));
-            } else if ("integer".equals(col.getType())) {
-                cvs.put(col.getName(), c.getLong(c.getColumnIndex(col.getName())));
-            } else if ("blob".equals(col.getType())) {
-                cvs.put(col.getName(), c.getBlob(c.getColumnIndex(col.getName())));
-            } else
-                eAssert(false);
-        }
-        return cvs;
-    }
-
     // ========================================================================
     //
     //
@@ -104,6 +85,97 @@ class DBUtils {
         return sql;
     }
 
+    /**
+     * Get SQL statement for creating index
+     * @param index
+     *   name of index
+     * @param table
+     *   name of table
+     * @param cols
+     *   columns of index.
+     * @param unique
+     * @return
+     */
+    static String
+    buildIndexSQL(String index, String table, DB.Col[] cols, boolean unique) {
+        String sql = "CREATE " + (unique? "UNIQUE ": "") + "INDEX " + index + " ON " + table + " (";
+        for (Col col : cols)
+            sql += col.getName() + ", ";
+        sql += ");";
+        sql = sql.replace(", );", ");");
+        return sql;
+    }
+
+    /**
+     * Get SQL statement for inserting row. Values are given as arguments - '?'.
+     * @param table
+     * @param cols
+     *   column names.
+     * @param replace
+     *   true for "INSERT OR REPLACE".
+     * @return
+     */
+    static String
+    buildInsertSQL(String table, String[] cols, boolean replace) {
+        String sql = "INSERT " + (replace? "OR REPLACE ": "") + "INTO " + table + " (";
+        String vs = "";
+        for (int i = 0; i < cols.length; i++) {
+            sql += (i > 0? ", ": "") + cols[i];
+            vs += (i > 0? ", ": "") + "?";
+        }
+        return sql + ") VALUES (" + vs + ");";
+    }
+
+    /**
+     * Get SQL statement for creating full-text-search virtual table.
+     * @param table
+     * @param cols
+     * @param module
+     *   "fts3" or "fts4"
+     * @return
+     */
+    static String
+    buildFtsTableSQL(String table, DB.Col[] cols, String module) {
+        String sql = "CREATE VIRTUAL TABLE " + table + " USING " + module + " (";
+        for (int i = 0; i < cols.length; i++)
+            sql += (i > 0? ", ": "") + cols[i].getName();
+        return sql + ");";
+    }
+
+    /**
+     * Build 'MATCH' expression of FTS table. Each token is used as prefix.
+     * Characters that are not part of token in FTS 'simple' tokenizer are used as delimiter.
+     * So, special characters of FTS query syntax never appear at the result.
+     * @param toks
+     *   tokens made by 'SCmp.tokenize()'.
+     * @param col
+     *   column to match. null for all columns.
+     * @return
+     *   empty string if there is no valid token.
+     */
+    static String
+    buildFtsPrefixMatch(String[] toks, DB.Col col) {
+        String prefix = (null == col)? "": col.getName() + ":";
+        StringBuilder sb = new StringBuilder();
+        for (String tok : toks) {
+            int s = -1;
+            for (int i = 0; i <= tok.length(); i++) {
+                char c = (i < tok.length())? tok.charAt(i): ' ';
+                // 'simple' tokenizer : all non-ASCII and ASCII alphanumeric characters are part of token.
+                boolean tokc = c >= 0x80 || Character.isLetterOrDigit(c);
+                if (tokc && s < 0)
+                    s = i;
+                else if (!tokc && s >= 0) {
+                    if (sb.length() > 0)
+                        sb.append(' ');
+                    sb.append(prefix).append(tok, s, i).append('*');
+                    s = -1;
+                }
+            }
+        }
+        return sb.toString();
+    }
+
     static String
     buildSQLOrderBy(boolean withStatement, DB.Col col, boolean asc) {
         if (null == col)
@@ -147,16 +219,153 @@ class DBUtils {
         // NOTE
         // There is NO USE CASE requiring sorted cursor for videos.
         // result of querying videos don't need to be sorted cursor.
-        String mrefTable = DB.getVideoRefTableName(plid);
-        sql += sel + " FROM " + DB.getVideoTableName() + ", " + mrefTable
-                + " WHERE " + mrefTable + "." + ColVideoRef.VIDEOID.getName()
-                            + " = " + tableVideoNS + ColVideo.ID.getName()
+        // Index of (playlistid, videoid) is used to find videos of the playlist.
+        String mrefTable = DB.getVideoRefTableName();
+        sql += sel + " FROM " + mrefTable + " JOIN " + DB.getVideoTableName()
+                + " ON " + mrefTable + "." + ColVideoRef.VIDEOID.getName()
+                         + " = " + tableVideoNS + ColVideo.ID.getName()
+                + " WHERE " + mrefTable + "." + ColVideoRef.PLAYLISTID.getName() + " = " + plid
                 + where
                 + " " + (null != orderBy? orderBy: "")
                 + ";";
         return sql;
     }
 
+    /**
+     * Build SQL reading one page of videos of the playlist ordered by (title, _id).
+     * Page is started after the last row of previous page (keyset pagination).
+     * So, reading a page doesn't depend on it's position in the playlist or size of library.
+     * Arguments are (title, title, _id) of last row of previous page.
+     * References are read with index of (playlistid, title, videoid) and
+     *   each video is looked up by primary key.
+     * @param plid
+     * @param cols
+     *   selected columns. TITLE and ID(key columns) are appended at the end.
+     * @param limit
+     *   page size.
+     * @return
+     */
+    static String
+    buildQueryVideosPageSQL(long plid, ColVideo[] cols, int limit) {
+        eAssert(cols.length > 0);
+        String title = "r." + ColVideoRef.TITLE.getName();
+        String id = "r." + ColVideoRef.VIDEOID.getName();
+        String sql = "SELECT ";
+        for (Col col : cols)
+            sql += "v." + col.getName() + ", ";
+        return sql + title + ", " + id
+               + " FROM " + DB.getVideoRefTableName() + " r"
+               + " JOIN " + DB.getVideoTableName() + " v"
+               + " ON v." + ColVideo.ID.getName() + " = " + id
+               + " WHERE r." + ColVideoRef.PLAYLISTID.getName() + " = " + plid
+               // 'title >= ?' is for range-search with index.
+               + " AND " + title + " >= ? AND (" + title + " > ? OR " + id + " > ?)"
+               + " ORDER BY " + title + ", " + id
+               + " LIMIT " + limit + ";";
+    }
+
+    /**
+     * Build SQL counting rows of {@link #buildQueryVideosPageSQL(long, ColVideo[], int)}.
+     */
+    static String
+    buildCountVideosSQL(long plid) {
+        String id = "r." + ColVideoRef.VIDEOID.getName();
+        return "SELECT COUNT(*)"
+               + " FROM " + DB.getVideoRefTableName() + " r"
+               + " JOIN " + DB.getVideoTableName() + " v"
+               + " ON v." + ColVideo.ID.getName() + " = " + id
+               + " WHERE r." + ColVideoRef.PLAYLISTID.getName() + " = " + plid + ";";
+    }
+
+    /**
+     * Build SQL searching videos with full-text index. See DB.queryVideosSearch().
+     * Arguments SHOULD be ones from {@link #buildQueryVideosSearchArgs(String[])}.
+     * @param cols
+     * @return
+     */
+    static String
+    buildQueryVideosSearchSQL(ColVideo[] cols) {
+        String ftsSel = ColVideo.ID.getName() + " IN ("
+                        + "SELECT docid FROM " + DB.getVideoFtsTableName()
+                        + " WHERE " + DB.getVideoFtsTableName() + " MATCH ?)";
+        return SQLiteQueryBuilder.buildQueryString(false, DB.getVideoTableName(), getColNames(cols),
+                                                   ftsSel, null, null,
+                                                   // Videos whose title matches all tokens come first.
+                                                   ftsSel + " DESC, " + buildSQLOrderBy(false, ColVideo.TITLE, true),
+                                                   null);
+    }
+
+    /**
+     * @param toks
+     *   tokens to search. There SHOULD be at least one valid token.
+     *   See {@link #buildFtsPrefixMatch(String[], Col)}
+     * @return
+     *   arguments of {@link #buildQueryVideosSearchSQL(ColVideo[])}
+     */
+    static String[]
+    buildQueryVideosSearchArgs(String[] toks) {
+        return new String[] { buildFtsPrefixMatch(toks, null),
+                              buildFtsPrefixMatch(toks, ColVideoFts.TITLE) };
+    }
+
+    /**
+     * Build SQL querying videos whose title has at least one of tokens.
+     * See DB.queryVideosSharingTitleToken().
+     * @param cols
+     * @param toks
+     *   tokens of title. See SCmp.tokenize()
+     * @return
+     */
+    static String
+    buildQueryVideosSharingTitleTokenSQL(ColVideo[] cols, String[] toks) {
+        String tokset = "";
+        for (int i = 0; i < toks.length; i++)
+            tokset += (i > 0? ", ": "") + DatabaseUtils.sqlEscapeString(toks[i]);
+        return SQLiteQueryBuilder.buildQueryString(false, DB.getVideoTableName(), getColNames(cols),
+                                                   ColVideo.ID.getName() + " IN ("
+                                                   + "SELECT DISTINCT " + ColTitleToken.VIDEOID.getName()
+                                                   + " FROM " + DB.getTitleTokenTableName()
+                                                   + " WHERE " + ColTitleToken.TOKEN.getName()
+                                                   + " IN (" + tokset + "))",
+                                                   null, null, null, null);
+    }
+
+    /**
+     * Build SQL querying thumbnail data of video. See DB.queryThumbnail().
+     * @param vid
+     *   BaseColumns._ID of video.
+     */
+    static String
+    buildQueryThumbnailSQL(long vid) {
+        return SQLiteQueryBuilder.buildQueryString(false, DB.getThumbnailTableName(),
+                                                   new String[] { ColThumbnail.DATA.getName() },
+                                                   ColThumbnail.ID.getName() + " = " + vid,
+                                                   null, null, null, null);
+    }
+
+    /**
+     * Build SQL querying name and position of bookmarks of video sorted by position.
+     * See DB.queryBookmarks().
+     * @param vid
+     *   BaseColumns._ID of video.
+     * @param from
+     *   inclusive. (ms)
+     * @param to
+     *   exclusive. (ms)
+     */
+    static String
+    buildQueryBookmarksSQL(long vid, int from, int to) {
+        return SQLiteQueryBuilder.buildQueryString(false, DB.getBookmarkTableName(),
+                                                   new String[] { ColBookmark.NAME.getName(),
+                                                                  ColBookmark.POS.getName() },
+                                                   ColBookmark.VIDEOID.getName() + " = " + vid
+                                                   + " AND " + ColBookmark.POS.getName() + " >= " + from
+                                                   + " AND " + ColBookmark.POS.getName() + " < " + to,
+                                                   null, null,
+                                                   ColBookmark.POS.getName() + ", " + ColBookmark.ID.getName(),
+                                                   null);
+    }
+
     static Object
     getCursorVal(Cursor c, Col col) {
         int i = c.getColumnIndex(col.getName());
@@ -170,6 +379,30 @@ class DBUtils {
             return null;
     }
 
+    /**
+     * Typed version of 'ContentValues.put()'. Reflection is not used because this is on hot path.
+     * @param cvs
+     * @param col
+     * @param v
+     *   String, Long, Integer, byte[] and Float are supported.
+     */
+    static void
+    putContentValue(ContentValues cvs, Col col, Object v) {
+        String key = col.getName();
+        if (v instanceof String)
+            cvs.put(key, (String)v);
+        else if (v instanceof Long)
+            cvs.put(key, (Long)v);
+        else if (v instanceof Integer)
+            cvs.put(key, (Integer)v);
+        else if (v instanceof byte[])
+            cvs.put(key, (byte[])v);
+        else if (v instanceof Float)
+            cvs.put(key, (Float)v);
+        else
+            eAssert(false);
+    }
+
     // ----------------------------------------------------------------------------------------------------------------
     // For Bookmarks
     // ----------------------------------------------------------------------------------------------------------------
@@ -204,15 +437,21 @@ class DBUtils {
         return new DB.Bookmark(name, pos);
     }
 
-    private static String
-    encodeBookmark(DB.Bookmark bm) {
+    static boolean
+    isValidBookmark(DB.Bookmark bm) {
+        return bm.pos > 0
+               && Utils.isValidValue(bm.name)
+               && !bm.name.contains("" + DB.BOOKMARK_DELIMITER);
+    }
+
+    private static void
+    encodeBookmark(StringBuilder sb, DB.Bookmark bm) {
         // NOTE : Check strictly to keep DB safe!!!
         eAssert(bm.pos > 0
                 && Utils.isValidValue(bm.name));
-        return ((Integer)bm.pos).toString() // to avoid implicit casting to 'char' type,
-                                            //   because following DB.BOOKMARK_NAME_DELIMIETER is 'char'.
-               + DB.BOOKMARK_NAME_DELIMIETER
-               + bm.name;
+        sb.append(bm.pos)
+          .append(DB.BOOKMARK_NAME_DELIMIETER)
+          .append(bm.name);
     }
 
     static boolean
@@ -245,46 +484,12 @@ class DBUtils {
 
     static String
     encodeBookmarks(DB.Bookmark[] bms) {
-        if (0 == bms.length)
-            return "";
-
-        String s = "";
-        int i = 0;
-        for (i = 0; i < bms.length - 1; i++)
-            s += encodeBookmark(bms[i]) + DB.BOOKMARK_DELIMITER;
-        s += encodeBookmark(bms[i]);
-        return s;
-    }
-
-    static String
-    addBookmark(String bmsstr, DB.Bookmark bm) {
-        if (!bmsstr.isEmpty())
-            bmsstr += DB.BOOKMARK_DELIMITER;
-        return bmsstr + encodeBookmark(bm);
-    }
-
-    /**
-     * Delete first matching bookmark.
-     * If there is more than one bookmark matching, only first one is deleted.
-     * @param bmsstr
-     * @param bm
-     * @return
-     */
-    static String
-    deleteBookmark(String bmsstr, DB.Bookmark bm) {
-        DB.Bookmark[] bmarr = decodeBookmarks(bmsstr);
-        if (0 == bmarr.length)
-            return ""; // nothing to delete.
-        DB.Bookmark[] newBmarr = new DB.Bookmark[bmarr.length - 1];
-        // to avoid deleting more than one item.
-        boolean deleted = false;
-        int j = 0;
-        for (DB.Bookmark b : bmarr) {
-            if (deleted || !bm.equal(b))
-                newBmarr[j++] = b;
-            else
-                deleted = true;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < bms.length; i++) {
+            if (i > 0)
+                sb.append(DB.BOOKMARK_DELIMITER);
+            encodeBookmark(sb, bms[i]);
         }
-        return encodeBookmarks(newBmarr);
+        return sb.toString();
     }
 }
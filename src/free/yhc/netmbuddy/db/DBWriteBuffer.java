@@ -0,0 +1,192 @@
+/*****************************************************************************
+ *    Copyright (C) 2012, 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.db;
+
+import static free.yhc.netmbuddy.utils.Utils.eAssert;
+
+import java.util.HashMap;
+
+import free.yhc.netmbuddy.model.Policy;
+import free.yhc.netmbuddy.utils.Utils;
+
+// Write-behind buffer for bookkeeping values of video updated during playback.
+// (time played and # of played)
+// Volume is NOT buffered. It's changed by user rarely and player reads it from DB.
+// Values are kept in memory per Youtube video id - last value wins - and written to DB
+//   at once in one transaction later.
+// So, skipping quickly through videos doesn't cost disk write for each video.
+//
+// Values of this buffer are NOT in DB yet. Reader that requires exact values
+//   should look up this buffer or flush it first. See DB.
+//
+// NOTE
+// Monitor of this buffer is held only for in-memory operations.
+// It is called at UI thread. So, it SHOULD NOT wait for DB.
+// Values taken for flushing are still visible until they are written to DB.
+class DBWriteBuffer {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(DBWriteBuffer.class);
+
+    static class Pending {
+        long    timePlayed  = -1; // -1 : not changed
+        int     nrPlayed    = 0;  // # of plays to add.
+    }
+
+    // key : Youtube video id.
+    private HashMap<String, Pending> mPendings = new HashMap<String, Pending>();
+    // Values being written to DB. null if there is no flushing.
+    private HashMap<String, Pending> mFlushing = null;
+    private boolean mFlushScheduled = false;
+    // Flushings are serialized by this lock.
+    // Only flushing thread waits on it. (Not UI thread)
+    final Object    flushLock = new Object();
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void
+        run() {
+            // Runs at UI thread. DB access is done at background.
+            new Thread(new Runnable() {
+                @Override
+                public void
+                run() {
+                    // Writing bookkeeping values is NOT FATAL operation.
+                    // So, exception is ignored.
+                    try {
+                        DB.get().flushPendingWrites();
+                    } catch (Exception e) {
+                        if (DBG) P.w("Fail to flush pending writes : " + e.getMessage());
+                    }
+                }
+            }).start();
+        }
+    };
+
+    private Pending
+    getPendingLocked(String ytvid) {
+        Pending p = mPendings.get(ytvid);
+        if (null == p) {
+            p = new Pending();
+            mPendings.put(ytvid, p);
+        }
+        return p;
+    }
+
+    private void
+    scheduleFlushLocked() {
+        if (mFlushScheduled)
+            return;
+        mFlushScheduled = true;
+        Utils.getUiHandler().postDelayed(mFlushRunnable, Policy.DB_WRITE_BUFFER_FLUSH_DELAY);
+    }
+
+    synchronized void
+    setPlayed(String ytvid, long time) {
+        Pending p = getPendingLocked(ytvid);
+        p.timePlayed = time;
+        p.nrPlayed++;
+        scheduleFlushLocked();
+    }
+
+    /**
+     * @return
+     *   -1 if time played of the video is not changed.
+     */
+    synchronized long
+    getTimePlayed(String ytvid) {
+        Pending p = mPendings.get(ytvid);
+        if (null != p && p.timePlayed >= 0)
+            return p.timePlayed;
+        p = (null == mFlushing)? null: mFlushing.get(ytvid);
+        return (null == p)? -1: p.timePlayed;
+    }
+
+    synchronized boolean
+    isEmpty() {
+        return mPendings.isEmpty();
+    }
+
+    /**
+     * Request flushing at background as soon as possible.
+     */
+    void
+    requestFlush() {
+        synchronized (this) {
+            if (mPendings.isEmpty())
+                return;
+            mFlushScheduled = true;
+        }
+        Utils.getUiHandler().removeCallbacks(mFlushRunnable);
+        Utils.getUiHandler().post(mFlushRunnable);
+    }
+
+    /**
+     * Cancel flushing that is scheduled but not started yet.
+     * Pending values are kept. They are flushed when DB is closed or at next scheduled flushing.
+     * This SHOULD be called at UI thread.
+     */
+    void
+    cancelFlush() {
+        Utils.getUiHandler().removeCallbacks(mFlushRunnable);
+        synchronized (this) {
+            mFlushScheduled = false;
+        }
+    }
+
+    /**
+     * Take all pending values out of buffer.
+     * Caller SHOULD hold {@link #flushLock}, write them to DB and call {@link #flushDone(boolean)}.
+     * Taken values are still visible to readers until {@link #flushDone(boolean)}.
+     * @return
+     *   key is Youtube video id.
+     */
+    synchronized HashMap<String, Pending>
+    take() {
+        eAssert(null == mFlushing);
+        mFlushing = mPendings;
+        mPendings = new HashMap<String, Pending>();
+        mFlushScheduled = false;
+        return mFlushing;
+    }
+
+    /**
+     * @param success
+     *   false if taken values are not written to DB.
+     *   Then they are put back to buffer. Values set after 'take()' are newer.
+     */
+    synchronized void
+    flushDone(boolean success) {
+        eAssert(null != mFlushing);
+        if (!success) {
+            for (String ytvid : mFlushing.keySet()) {
+                Pending fp = mFlushing.get(ytvid);
+                Pending p = getPendingLocked(ytvid);
+                if (p.timePlayed < 0)
+                    p.timePlayed = fp.timePlayed;
+                p.nrPlayed += fp.nrPlayed;
+            }
+            // Try again later.
+            if (!mPendings.isEmpty())
+                scheduleFlushLocked();
+        }
+        mFlushing = null;
+    }
+}
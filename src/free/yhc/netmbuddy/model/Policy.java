@@ -33,6 +33,7 @@ public class Policy {
     public static final String  APPDATA_TMPDIR          = APPDATA_DIR + "tmp/";
     public static final String  APPDATA_LOGDIR          = APPDATA_DIR + "logs/";
     public static final String  APPDATA_CACHEDIR        = APPDATA_DIR + "cache/";
+    public static final String  APPDATA_BACKUPDIR       = APPDATA_DIR + "backup/";
     // Downloaded video directory
     public static final String  APPDATA_VIDDIR          = APPDATA_DIR + "videos/";
     public static final String  APPDATA_ERRLOG          = APPDATA_LOGDIR + "last_error";
@@ -109,6 +110,31 @@ public class Policy {
     // Video Player
     // --------------------------------------------------------------------
 
+    // --------------------------------------------------------------------
+    // Thumbnail
+    // --------------------------------------------------------------------
+    // Memory cache of decoded thumbnails can use up to 1/N of max heap size.
+    public static final int     THUMBNAIL_CACHE_HEAP_FRACTION   = 8;
+    // # of background threads loading thumbnails of list items.
+    public static final int     THUMBNAIL_LOADER_NR_THREADS     = 2;
+
+    // --------------------------------------------------------------------
+    // DB
+    // --------------------------------------------------------------------
+    // Max # of values in one 'IN (...)' clause of SQL statement.
+    public static final int     DB_MAX_IN_LIST_SIZE     = 500;
+    // # of recent changes kept at change log of each table.
+    // Consumer that missed more changes than this, reloads whole table.
+    public static final int     DB_CHANGELOG_SIZE       = 256;
+    // # of incremental backups(deltas) before taking new full snapshot.
+    // Restoring replays all deltas. So, too large value makes restoring slow.
+    public static final int     DB_BACKUP_FULL_INTERVAL = 8;
+    // # of rows read from DB at once by paged cursor.
+    // Next page is read when cursor moves into last half of loaded rows.
+    public static final int     DB_CURSOR_PAGE_SIZE     = 100;
+    // Values updated during playback (ex. time played) are written to DB after this delay.
+    public static final long    DB_WRITE_BUFFER_FLUSH_DELAY = 30 * 1000; // 30 seconds
+
     // --------------------------------------------------------------------
     // Searching
     // --------------------------------------------------------------------
@@ -118,6 +144,16 @@ public class Policy {
     public static final float   SIMILARITY_THRESHOLD_HIGH       = 0.4f;
     public static final float   SIMILARITY_THRESHOLD_VERYHIGH   = 0.7f;
     public static final int     MAX_SIMILAR_TITLES_RESULT   = 99999999; // actually no-limitation.
+    // # of titles read from DB at once and scored by one worker thread.
+    public static final int     SIMILAR_TITLES_SCAN_CHUNK_SIZE  = 256;
+    // MinHash signature of title is split into LSH_BANDS bands of LSH_ROWS hashes.
+    // Probability that two titles whose token-set-Jaccard is J become candidate is
+    //   1 - (1 - J^LSH_ROWS)^LSH_BANDS. (ex. J = 0.3 => 0.85, J = 0.5 => 0.99)
+    public static final int     SIMILAR_TITLES_LSH_BANDS        = 20;
+    public static final int     SIMILAR_TITLES_LSH_ROWS         = 2;
+    // Each video in LSH bucket is compared with at most this number of preceding videos in the bucket.
+    // Without this, a few huge buckets (ex. very common tokens) make clustering O(N^2).
+    public static final int     SIMILAR_TITLES_BUCKET_WINDOW    = 64;
     // --------------------------------------------------------------------
     // Usage Report
     // --------------------------------------------------------------------
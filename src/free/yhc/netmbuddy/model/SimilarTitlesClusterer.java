@@ -0,0 +1,253 @@
+/*****************************************************************************
+ *    Copyright (C) 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.database.Cursor;
+import free.yhc.netmbuddy.db.ColVideo;
+import free.yhc.netmbuddy.db.DB;
+import free.yhc.netmbuddy.scmp.SCmp;
+import free.yhc.netmbuddy.utils.Utils;
+
+// Group all videos in DB whose titles are similar with each other, in one pass.
+//
+// [ Algorithm ]
+// MinHash signature is computed from token set of each normalized title.
+// Signature is split into bands, and videos having same band value are candidates (LSH).
+// Candidates are confirmed with SCmp, and confirmed pairs are merged with union-find.
+// So, only candidates are compared instead of comparing all pairs - O(N^2).
+//
+// NOTE
+// LSH is approximate.
+// Similar titles that share only few tokens may not be candidates.
+public class SimilarTitlesClusterer {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(SimilarTitlesClusterer.class);
+
+    private static final int    NR_BANDS    = Policy.SIMILAR_TITLES_LSH_BANDS;
+    private static final int    NR_ROWS     = Policy.SIMILAR_TITLES_LSH_ROWS;
+    private static final int    NR_HASHES   = NR_BANDS * NR_ROWS;
+    private static final int    BUCKET_WINDOW = Policy.SIMILAR_TITLES_BUCKET_WINDOW;
+    private static final int[]  sSeeds      = new int[NR_HASHES];
+
+    static {
+        for (int i = 0; i < NR_HASHES; i++)
+            sSeeds[i] = mix(0x9e3779b9 * (i + 1));
+    }
+
+    private final float     mThreshold;
+
+    private long[]          mIds;
+    private String[]        mNormTitles;
+    // [video * NR_HASHES + hash]
+    private int[]           mSigs;
+    // Videos whose title doesn't have any token, are not grouped.
+    private boolean[]       mValid;
+    // union-find
+    private int[]           mParent;
+
+    public interface OnProgressListener {
+        /**
+         * Called at the thread that calls 'cluster()'
+         * @param percent
+         */
+        void onProgress(int percent);
+    }
+
+    public SimilarTitlesClusterer(float threshold) {
+        mThreshold = threshold;
+    }
+
+    // 'fmix32' of MurmurHash3.
+    private static int
+    mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private void
+    loadTitles() {
+        Cursor c = DB.get().queryVideos(new ColVideo[] { ColVideo.ID, ColVideo.NORMTITLE }, null, false);
+        try {
+            int n = c.getCount();
+            mIds = new long[n];
+            mNormTitles = new String[n];
+            int i = 0;
+            if (c.moveToFirst()) {
+                do {
+                    mIds[i] = c.getLong(0);
+                    mNormTitles[i] = c.getString(1);
+                    i++;
+                } while (c.moveToNext());
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private void
+    buildSignatures() {
+        int n = mIds.length;
+        mSigs = new int[n * NR_HASHES];
+        mValid = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            String[] toks = SCmp.tokenizeNormalized(mNormTitles[v]);
+            if (0 == toks.length)
+                continue;
+            mValid[v] = true;
+            int b = v * NR_HASHES;
+            Arrays.fill(mSigs, b, b + NR_HASHES, Integer.MAX_VALUE);
+            for (String tok : toks) {
+                int th = tok.hashCode();
+                for (int k = 0; k < NR_HASHES; k++) {
+                    int h = mix(th ^ sSeeds[k]);
+                    if (h < mSigs[b + k])
+                        mSigs[b + k] = h;
+                }
+            }
+        }
+    }
+
+    private int
+    bandHash(int v, int band) {
+        int b = v * NR_HASHES + band * NR_ROWS;
+        int h = band;
+        for (int r = 0; r < NR_ROWS; r++)
+            h = 31 * h + mSigs[b + r];
+        return mix(h);
+    }
+
+    private int
+    find(int v) {
+        while (mParent[v] != v) {
+            mParent[v] = mParent[mParent[v]]; // path halving
+            v = mParent[v];
+        }
+        return v;
+    }
+
+    /**
+     * Confirm candidates in the bucket [s, e) of 'keys'
+     * Each video is compared only with preceding videos in the window of BUCKET_WINDOW.
+     * So, cost of bucket is O(b * BUCKET_WINDOW) instead of O(b^2).
+     * Similar titles in the same oversized bucket are still grouped through chain of
+     *   videos in the window, or at other bands. But, some of them may be missed. (See LSH NOTE)
+     */
+    private void
+    confirmBucket(SCmp scmp, long[] keys, int s, int e, AtomicReference<Boolean> cancelled) {
+        for (int i = s + 1; i < e && !cancelled.get(); i++) {
+            int v0 = (int)keys[i];
+            scmp.setCmpParameter(mNormTitles[v0], true, null);
+            for (int j = Math.max(s, i - BUCKET_WINDOW); j < i; j++) {
+                int v1 = (int)keys[j];
+                int r0 = find(v0);
+                int r1 = find(v1);
+                if (r0 == r1)
+                    continue; // already in the same group.
+                if (scmp.exceedsNormalized(mNormTitles[v1], mThreshold))
+                    mParent[r0] = r1;
+            }
+        }
+    }
+
+    private long[][]
+    collectGroups() {
+        int n = mIds.length;
+        int[] sizes = new int[n];
+        for (int v = 0; v < n; v++)
+            sizes[find(v)]++;
+
+        // Groups are ordered by the first video of the group.
+        int[] gidx = new int[n];
+        Arrays.fill(gidx, -1);
+        ArrayList<long[]> groups = new ArrayList<long[]>();
+        int[] fill = new int[n];
+        for (int v = 0; v < n; v++) {
+            int r = find(v);
+            if (sizes[r] < 2)
+                continue;
+            if (gidx[r] < 0) {
+                gidx[r] = groups.size();
+                groups.add(new long[sizes[r]]);
+            }
+            groups.get(gidx[r])[fill[r]++] = mIds[v];
+        }
+        return groups.toArray(new long[groups.size()][]);
+    }
+
+    /**
+     * This is blocking function. So, this SHOULD NOT be called at UI thread.
+     * @param cancelled
+     *   clustering is stopped as soon as possible when this becomes 'true'.
+     * @param listener
+     * @return
+     *   DB ids of videos in each group. Only groups having more than one video are included.
+     *   Empty array if cancelled.
+     */
+    public long[][]
+    cluster(AtomicReference<Boolean> cancelled, OnProgressListener listener) {
+        loadTitles();
+        buildSignatures();
+        int n = mIds.length;
+        mParent = new int[n];
+        for (int v = 0; v < n; v++)
+            mParent[v] = v;
+
+        SCmp scmp = new SCmp();
+        long[] keys = new long[n];
+        for (int band = 0; band < NR_BANDS; band++) {
+            if (cancelled.get())
+                return new long[0][];
+            if (null != listener)
+                listener.onProgress(band * 100 / NR_BANDS);
+
+            // key : (band hash << 32) | video
+            // After sorting, videos in the same bucket are adjacent.
+            int nk = 0;
+            for (int v = 0; v < n; v++) {
+                if (mValid[v])
+                    keys[nk++] = ((long)bandHash(v, band) << 32) | v;
+            }
+            Arrays.sort(keys, 0, nk);
+
+            int s = 0;
+            for (int i = 1; i <= nk; i++) {
+                if (i < nk && (keys[i] >>> 32) == (keys[s] >>> 32))
+                    continue;
+                if (i - s > 1)
+                    confirmBucket(scmp, keys, s, i, cancelled);
+                s = i;
+            }
+        }
+        if (cancelled.get())
+            return new long[0][];
+        if (null != listener)
+            listener.onProgress(100);
+        return collectGroups();
+    }
+}
@@ -0,0 +1,215 @@
+/*****************************************************************************
+ *    Copyright (C) 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.model;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.database.Cursor;
+import free.yhc.netmbuddy.db.ColVideo;
+import free.yhc.netmbuddy.db.DB;
+import free.yhc.netmbuddy.scmp.SCmp;
+import free.yhc.netmbuddy.utils.Utils;
+
+// Scan videos whose title is similar with given title.
+// Titles are read from DB in chunks, and each chunk is scored at worker thread.
+// SCmp instance is NOT shared between threads (SCmp is not thread-safe).
+public class SimilarTitlesScanner {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(SimilarTitlesScanner.class);
+
+    // interval to publish progress while waiting worker thread.
+    private static final int    PROGRESS_INTERVAL   = 100; // ms
+
+    private final String    mTitle;
+    private final float     mThreshold;
+    private final int       mNrThreads;
+
+    private final ThreadLocal<SCmp> mScmp = new ThreadLocal<SCmp>() {
+        @Override
+        protected SCmp
+        initialValue() {
+            SCmp scmp = new SCmp();
+            scmp.setCmpParameter(mTitle, true, null);
+            return scmp;
+        }
+    };
+
+    public interface OnProgressListener {
+        /**
+         * Called at the thread that calls 'scan()'
+         * @param percent
+         */
+        void onProgress(int percent);
+    }
+
+    private class ScoreJob implements Callable<long[]> {
+        private final long[]    _mIds;
+        private final String[]  _mTitles;
+        private final int       _mSz;
+        private final AtomicInteger _mNrDone;
+        private final AtomicReference<Boolean> _mCancelled;
+
+        ScoreJob(long[] ids, String[] titles, int sz,
+                 AtomicInteger nrDone, AtomicReference<Boolean> cancelled) {
+            _mIds = ids;
+            _mTitles = titles;
+            _mSz = sz;
+            _mNrDone = nrDone;
+            _mCancelled = cancelled;
+        }
+
+        @Override
+        public long[]
+        call() {
+            SCmp scmp = mScmp.get();
+            long[] matched = new long[_mSz];
+            int n = 0;
+            for (int i = 0; i < _mSz; i++) {
+                if (_mCancelled.get())
+                    break;
+                if (scmp.exceedsNormalized(_mTitles[i], mThreshold))
+                    matched[n++] = _mIds[i];
+            }
+            _mNrDone.addAndGet(_mSz);
+            long[] r = new long[n];
+            System.arraycopy(matched, 0, r, 0, n);
+            return r;
+        }
+    }
+
+    public SimilarTitlesScanner(String title, float threshold) {
+        mTitle = title;
+        mThreshold = threshold;
+        mNrThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    private static void
+    publishProgress(OnProgressListener listener, int nrDone, int total, int[] lastPercent) {
+        if (null == listener || total <= 0)
+            return;
+        int percent = nrDone * 100 / total;
+        if (percent > lastPercent[0]) {
+            listener.onProgress(percent);
+            lastPercent[0] = percent;
+        }
+    }
+
+    private static long[]
+    waitJob(Future<long[]> f,
+            OnProgressListener listener, AtomicInteger nrDone, int total, int[] lastPercent)
+        throws InterruptedException {
+        while (true) {
+            try {
+                return f.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                publishProgress(listener, nrDone.get(), total, lastPercent);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * This is blocking function. So, this SHOULD NOT be called at UI thread.
+     * @param cancelled
+     *   scanning is stopped as soon as possible when this becomes 'true'.
+     * @param listener
+     * @param maxResults
+     * @return
+     *   DB ids of videos whose similarity is larger than threshold.
+     *   Order is same with the one of DB query.
+     * @throws InterruptedException
+     */
+    public long[]
+    scan(AtomicReference<Boolean> cancelled,
+         OnProgressListener listener,
+         int maxResults) throws InterruptedException {
+        final int COLI_ID        = 0;
+        final int COLI_NORMTITLE = 1;
+        final int chunkSz = Policy.SIMILAR_TITLES_SCAN_CHUNK_SIZE;
+        // Videos that don't share any title token, are never similar.
+        Cursor c = DB.get().queryVideosSharingTitleToken(new ColVideo[] { ColVideo.ID,
+                                                                          ColVideo.NORMTITLE },
+                                                         mTitle);
+        ExecutorService es = Executors.newFixedThreadPool(mNrThreads);
+        LinkedList<Future<long[]>> jobs = new LinkedList<Future<long[]>>();
+        AtomicInteger nrDone = new AtomicInteger(0);
+        int[] lastPercent = new int[] { 0 };
+        long[] r = new long[0];
+        try {
+            int total = c.getCount();
+            if (!c.moveToFirst())
+                return r;
+
+            // Read titles from DB.
+            boolean more = true;
+            while (more && !cancelled.get()) {
+                long[] ids = new long[chunkSz];
+                String[] titles = new String[chunkSz];
+                int sz = 0;
+                do {
+                    ids[sz] = c.getLong(COLI_ID);
+                    titles[sz] = c.getString(COLI_NORMTITLE);
+                    sz++;
+                    more = c.moveToNext();
+                } while (more && sz < chunkSz);
+                jobs.addLast(es.submit(new ScoreJob(ids, titles, sz, nrDone, cancelled)));
+                publishProgress(listener, nrDone.get(), total, lastPercent);
+            }
+            c.close();
+            c = null;
+
+            // Merge results in order.
+            LinkedList<long[]> results = new LinkedList<long[]>();
+            int nrResults = 0;
+            for (Future<long[]> f : jobs) {
+                if (cancelled.get() || nrResults >= maxResults)
+                    break;
+                long[] jr = waitJob(f, listener, nrDone, total, lastPercent);
+                results.addLast(jr);
+                nrResults += jr.length;
+            }
+            publishProgress(listener, nrDone.get(), total, lastPercent);
+
+            r = new long[Math.min(nrResults, maxResults)];
+            int i = 0;
+            for (long[] jr : results) {
+                int n = Math.min(jr.length, r.length - i);
+                System.arraycopy(jr, 0, r, i, n);
+                i += n;
+            }
+            return r;
+        } finally {
+            if (null != c)
+                c.close();
+            es.shutdownNow();
+        }
+    }
+}
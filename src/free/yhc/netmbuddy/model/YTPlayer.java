@@ -1487,18 +1487,8 @@ UnexpectedExceptionHandler.Evidence {
 
         // Update DB at this moment.
         // It's not perfectly right moment but it's fair enough
-        new Thread(new Runnable() {
-            @Override
-            public void
-            run() {
-                // Updating 'Recently played video' is NOT FATAL operation.
-                // Updating not only seldom fails, but not fatal.
-                // So, exception is ignored for this operation.
-                try {
-                    mDb.updateVideoTimePlayed(ytvid, System.currentTimeMillis());
-                } catch (Exception ignored) { }
-            }
-        }).start();
+        // Value is buffered and written to DB later. So, this is cheap enough to be done here.
+        mDb.updateVideoPlayed(ytvid, System.currentTimeMillis());
 
         // NOTE
         // With early-caching, in case of first video - actually not-cached video,
@@ -1603,6 +1593,7 @@ UnexpectedExceptionHandler.Evidence {
         mpRelease();
         releaseLocks();
         mVlm.reset();
+        mDb.requestFlushPendingWrites();
         mYtDnr.close();
         mErrRetry = PLAYER_ERR_RETRY;
 
@@ -2013,6 +2004,7 @@ UnexpectedExceptionHandler.Evidence {
         if (isVideoPlaying()
             && MPState.PREPARING != mpGetState())
             mpPause();
+        mDb.requestFlushPendingWrites();
     }
 
     void
@@ -24,6 +24,7 @@ import android.app.Notification;
 import android.app.Service;
 import android.content.Intent;
 import android.os.IBinder;
+import free.yhc.netmbuddy.db.DB;
 import free.yhc.netmbuddy.model.YTPlayer.StopState;
 import free.yhc.netmbuddy.utils.Utils;
 
@@ -110,6 +111,8 @@ UnexpectedExceptionHandler.Evidence {
     public void
     onDestroy() {
         if (DBG) P.v("Enter");
+        // Process may be killed soon after player service is gone.
+        DB.get().requestFlushPendingWrites();
         UnexpectedExceptionHandler.get().unregisterModule(this);
         super.onDestroy();
     }
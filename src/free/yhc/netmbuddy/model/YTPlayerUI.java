@@ -1312,9 +1312,7 @@ OnSharedPreferenceChangeListener {
                 if (oldVolume == newVolume)
                     return;
                 // Save to database and update adapter
-                // NOTE
-                // Should I consider about performance?
-                // Not yet. do something when performance is issued.
+                // Value is buffered and written to DB later.
                 mDb.updateVideoVolume(ytvid, newVolume);
             }
         });
@@ -0,0 +1,257 @@
+/*****************************************************************************
+ *    Copyright (C) 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.scmp;
+
+import free.yhc.netmbuddy.utils.Utils;
+
+/**
+ * Package Private
+ *
+ * Finds the same maximum weight that 'DNLoop' + 'SCElem.dnlInterate()' finds,
+ *   without enumerating all combinations of scan results.
+ *
+ * [ Algorithm ]
+ * Weight of one combination is sum of 'session weight's.
+ * Session is maximal run of rows that have same state.
+ *   - F : always one-row session. Weight is 1.
+ *   - C : product of (orderCoeff * s) of rows in the session, multiplied by contAdv.
+ *   - N : product of (orderCoeff * s) of rows in the session.
+ * State of a row depends only on index chosen at previous row and index chosen at this row.
+ * So, maximum weight of rows after the end of a session depends only on the
+ *   index chosen at the last row of the session.
+ *
+ * d[e][st]  : maximum weight of rows k, k+1, ... when new session of state 'st'
+ *             starts at row 'k' with scan result(entry) 'e'.
+ * nx[e][st] : maximum weight of rows k+1, k+2, ... when session of state 'st'
+ *             ends at row 'k' with scan result(entry) 'e'.
+ * Both are filled from the last row to the first one.
+ * Products in C and N session are maximized with simple max-product DP
+ *   (coefficients and similarities are not negative).
+ *
+ * Complexity : O(R^2 * E^3) where R is number of rows and E is max number of results in a row.
+ * In case of exact-word-matching, E is usually 1.
+ */
+class DPScorer {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(DPScorer.class);
+
+    // State. See SCElem.State
+    private static final int ST_F   = 0; // Found
+    private static final int ST_C   = 1; // Continuous
+    private static final int ST_N   = 2; // Non-continuous
+    private static final int NR_ST  = 3;
+
+    private static final float INVALID = Float.NEGATIVE_INFINITY;
+
+    private static int
+    state(int lasti, int i) {
+        if (i == (lasti + 1))
+            return ST_C;
+        else if (i > lasti)
+            return ST_N;
+        else
+            return ST_F;
+    }
+
+    /**
+     * Scratch buffers. Those are reused to avoid allocation at every comparison.
+     * Values are indexed by entry - position in 'idx' array of 'maxWeight()'.
+     */
+    static class Buffer {
+        private float[] _mD     = new float[0]; // [entry * NR_ST + state]
+        private float[] _mNx    = new float[0]; // [entry * NR_ST + state]
+        private float[] _mMp    = new float[0]; // [entry]
+
+        void
+        ensure(int nrEntries) {
+            if (_mMp.length >= nrEntries)
+                return;
+            int sz = nrEntries * 2;
+            _mD = new float[sz * NR_ST];
+            _mNx = new float[sz * NR_ST];
+            _mMp = new float[sz];
+        }
+    }
+
+    /**
+     * @return
+     *   entry in row 'k' whose index is 'i'. -1 if there is no such entry.
+     */
+    private static int
+    find(int[] rowS, int[] idx, int k, int i) {
+        for (int e = rowS[k]; e < rowS[k + 1]; e++) {
+            if (idx[e] == i)
+                return e;
+            else if (idx[e] > i)
+                break; // row is sorted by index.
+        }
+        return -1;
+    }
+
+    /**
+     * Scan result is given as compressed rows.
+     * Entries of row 'k' are at [rowS[k], rowS[k + 1]) of 'idx' and 'sim'.
+     * @param policy
+     * @param nr
+     *   number of rows.
+     * @param rowS
+     *   start entry of each row. Length SHOULD be larger than 'nr'.
+     * @param idx
+     *   index of similar element (same with ScanRes.i).
+     * @param sim
+     *   similarity (same with ScanRes.s).
+     * @param buf
+     * @return
+     *   -1.0f if there is no scan result.
+     */
+    static float
+    maxWeight(SCmpPolicy policy, int nr, int[] rowS, int[] idx, float[] sim, Buffer buf) {
+        if (0 == nr)
+            return -1.0f; // Nothing is iterated at DNLoop.
+
+        final float oc = policy.getOrderCoeff();
+        final float adv = policy.getContAdv();
+
+        buf.ensure(rowS[nr]);
+        final float[] d = buf._mD;
+        final float[] nx = buf._mNx;
+        final float[] mp = buf._mMp; // scratch buffer for max-product of N session
+
+        for (int k = nr - 1; k >= 0; k--) {
+            // Fill nx of row k
+            for (int e = rowS[k]; e < rowS[k + 1]; e++) {
+                int b = e * NR_ST;
+                if (k == nr - 1) {
+                    for (int st = 0; st < NR_ST; st++)
+                        nx[b + st] = 0.0f;
+                    continue;
+                }
+
+                for (int st = 0; st < NR_ST; st++)
+                    nx[b + st] = INVALID;
+
+                for (int e2 = rowS[k + 1]; e2 < rowS[k + 2]; e2++) {
+                    int st2 = state(idx[e], idx[e2]);
+                    float w = d[e2 * NR_ST + st2];
+                    for (int st = 0; st < NR_ST; st++) {
+                        // 'F' session always ends at it's row.
+                        if ((ST_F == st || st2 != st)
+                            && nx[b + st] < w)
+                            nx[b + st] = w;
+                    }
+                }
+            }
+
+            // Fill d of row k
+            for (int e = rowS[k]; e < rowS[k + 1]; e++) {
+                int b = e * NR_ST;
+                // State F
+                d[b + ST_F] = 1.0f + nx[b + ST_F];
+
+                // State C : indexes are continuous. So, there is only one way to extend session.
+                float best = INVALID;
+                float sw = oc * sim[e];
+                int m = k;
+                int em = e;
+                while (true) {
+                    float w = sw * adv + nx[em * NR_ST + ST_C];
+                    if (best < w)
+                        best = w;
+                    if (m + 1 >= nr)
+                        break;
+                    int nem = find(rowS, idx, m + 1, idx[em] + 1);
+                    if (nem < 0)
+                        break;
+                    ++m;
+                    em = nem;
+                    sw *= oc * sim[em];
+                }
+                d[b + ST_C] = best;
+
+                // State N
+                best = INVALID;
+                for (int e2 = rowS[k]; e2 < rowS[k + 1]; e2++)
+                    mp[e2] = INVALID;
+                mp[e] = oc * sim[e];
+                for (m = k; m < nr; m++) {
+                    boolean next = false;
+                    if (m + 1 < nr) {
+                        for (int e2 = rowS[m + 1]; e2 < rowS[m + 2]; e2++)
+                            mp[e2] = INVALID;
+                    }
+                    for (em = rowS[m]; em < rowS[m + 1]; em++) {
+                        if (INVALID == mp[em])
+                            continue;
+                        float w = mp[em] + nx[em * NR_ST + ST_N];
+                        if (best < w)
+                            best = w;
+                        if (m + 1 >= nr)
+                            continue;
+                        for (int e2 = rowS[m + 1]; e2 < rowS[m + 2]; e2++) {
+                            if (ST_N != state(idx[em], idx[e2]))
+                                continue;
+                            w = mp[em] * (oc * sim[e2]);
+                            if (mp[e2] < w) {
+                                mp[e2] = w;
+                                next = true;
+                            }
+                        }
+                    }
+                    if (!next)
+                        break;
+                }
+                d[b + ST_N] = best;
+            }
+        }
+
+        float maxW = INVALID;
+        // First row always starts with state 'F'.
+        for (int e = rowS[0]; e < rowS[1]; e++) {
+            if (maxW < d[e * NR_ST + ST_F])
+                maxW = d[e * NR_ST + ST_F];
+        }
+        if (DBG) P.v("DP maxW : " + maxW);
+        return maxW;
+    }
+
+    /**
+     * @param policy
+     * @param r
+     *   Result of 'SCElem.scanSimiarElems()'
+     * @return
+     *   -1.0f if there is no scan result.
+     */
+    static float
+    maxWeight(SCmpPolicy policy, SCElem.ScanRes[][] r) {
+        int[] rowS = new int[r.length + 1];
+        for (int k = 0; k < r.length; k++)
+            rowS[k + 1] = rowS[k] + r[k].length;
+        int[] idx = new int[rowS[r.length]];
+        float[] sim = new float[rowS[r.length]];
+        for (int k = 0; k < r.length; k++) {
+            for (int e = 0; e < r[k].length; e++) {
+                idx[rowS[k] + e] = r[k][e].i;
+                sim[rowS[k] + e] = r[k][e].s;
+            }
+        }
+        return maxWeight(policy, r.length, rowS, idx, sim, new Buffer());
+    }
+}
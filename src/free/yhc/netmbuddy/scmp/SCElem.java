@@ -31,6 +31,9 @@ class SCElem implements SCElemI {
 
     private static final SCmpPolicy sDefaultPolicy = new SCmpPolicy();
 
+    // Upper bound of similarity is slightly enlarged to be free from floating point error.
+    private static final float UPPER_BOUND_SLACK = 1.001f;
+
     private SCElemI[]   mElems = null;
     private SCmpPolicy  mPolicy = sDefaultPolicy;
     private float       mMaxW = -1.0f; // maximum weight
@@ -44,7 +47,7 @@ class SCElem implements SCElemI {
     };
 
     // Similarity CoMPare RESult
-    private static class ScanRes {
+    static class ScanRes {
         int     i;
         float   s; // similarity
         ScanRes(int aI, float aS) {
@@ -83,32 +86,35 @@ class SCElem implements SCElemI {
         return mElems;
     }
 
-    private float
-    getMaximumSimilarity(SCmpPolicy policy, SCElemI[] es) {
+    // ------------------------------------------------------------------------
+    // Below static functions are shared with SCTokCmp.
+    // ------------------------------------------------------------------------
+    static float
+    getMaximumSimilarity(SCmpPolicy policy, int nrElems) {
         // NOTE
-        // es.length > 0
+        // nrElems > 0
 
         // equal => full-continuous-match
-        float w = (es.length > 1)? 1.0f: 0.0f;
-        for (int i = 0; i < es.length - 1; i++)
+        float w = (nrElems > 1)? 1.0f: 0.0f;
+        for (int i = 0; i < nrElems - 1; i++)
             w *= policy.getOrderCoeff();
         w *= policy.getContAdv();
         w += 1.0f; // weight for 'found' state.
         return w;
     }
 
-    private float
-    getLengthDiffDeduction(SCmpPolicy policy, SCElemI[] es0, SCElemI[] es1) {
-        if (!getEnableLengthDiff())
+    static float
+    getLengthDiffDeduction(boolean enableLengthDiff, int nrElems0, int nrElems1) {
+        if (!enableLengthDiff)
             return 1.0f; // by default ignore length-diff-factor.
 
         int min, max;
-        if (es0.length < es1.length) {
-            min = es0.length;
-            max = es1.length;
+        if (nrElems0 < nrElems1) {
+            min = nrElems0;
+            max = nrElems1;
         } else {
-            min = es1.length;
-            max = es0.length;
+            min = nrElems1;
+            max = nrElems0;
         }
 
         float ldff = (max - min) / min;
@@ -128,10 +134,93 @@ class SCElem implements SCElemI {
         return 0.0f;
     }
 
+    /**
+     * Upper bounds of maximum weight by number of elements that have similar element.
+     * Those are calculated with
+     *   - similarity of each element is 1.0f
+     *   - adjacent sessions may have same state.
+     * So, real weight never exceeds this value.
+     * (Coefficients of policy SHOULD not be negative.)
+     * @param policy
+     * @param nrElems
+     * @param ubs
+     *   [out] ubs[n] : upper bound when 'n' elements have similar element.
+     *   Length SHOULD be larger than 'nrElems'.
+     */
+    private static void
+    getMaxWeightUpperBounds(SCmpPolicy policy, int nrElems, float[] ubs) {
+        float oc = policy.getOrderCoeff();
+        float adv = policy.getContAdv();
+        // g[m] : upper bound of weight of 'm' elements following first 'F' element.
+        // g[m] is stored at ubs[m + 1] to avoid allocating extra buffer.
+        if (nrElems > 0)
+            ubs[1] = 0.0f;
+        for (int m = 1; m < nrElems; m++) {
+            float best = 1.0f + ubs[m]; // 'F' session.
+            float p = 1.0f;
+            for (int l = 1; l <= m; l++) {
+                // 'C' or 'N' session whose length is 'l'
+                p *= oc;
+                float w = Utils.max(p * adv, p) + ubs[m - l + 1];
+                if (best < w)
+                    best = w;
+            }
+            ubs[m + 1] = best;
+        }
+
+        ubs[0] = -1.0f; // See 'similarity'. There is no matching.
+        for (int n = 1; n <= nrElems; n++)
+            ubs[n] = 1.0f + ubs[n];
+    }
+
+    /**
+     * @param policy
+     * @param nrElems
+     * @param maxS
+     * @param lenDiffDeduction
+     * @param threshold
+     * @param ubs
+     *   buffer used for upper bounds. Length SHOULD be larger than 'nrElems'.
+     * @return
+     *   minimum number of elements having similar element, to exceed threshold.
+     *   'nrElems + 1' if threshold cannot be exceeded.
+     */
+    static int
+    getMinMatches(SCmpPolicy policy, int nrElems,
+                  float maxS, float lenDiffDeduction,
+                  float threshold, float[] ubs) {
+        getMaxWeightUpperBounds(policy, nrElems, ubs);
+        int minRows = 0;
+        while (minRows <= nrElems) {
+            float ub = ubs[minRows] / maxS * lenDiffDeduction;
+            if (ub > 0)
+                ub *= UPPER_BOUND_SLACK;
+            if (ub > threshold)
+                break;
+            minRows++;
+        }
+        return minRows;
+    }
+
+    /**
+     *
+     * @param policy
+     * @param es0
+     * @param es1
+     * @param minRows
+     *   minimum number of elements in 'es0' that have similar element in 'es1'.
+     * @return
+     *   null if number of elements in 'es0' having similar element, cannot reach 'minRows'.
+     */
     private ScanRes[][]
-    scanSimiarElems(SCmpPolicy policy, SCElemI[] es0, SCElemI[] es1) {
+    scanSimiarElems(SCmpPolicy policy, SCElemI[] es0, SCElemI[] es1, int minRows) {
         LinkedList<LinkedList<ScanRes>> lres = new LinkedList<LinkedList<ScanRes>>();
+        int nrScanned = 0;
         for (SCElemI e0 : es0) {
+            // Early exit. Even if all remaining elements match, 'minRows' cannot be reached.
+            if (lres.size() + (es0.length - nrScanned) < minRows)
+                return null;
+            ++nrScanned;
             int i = 0;
             boolean bFirst = true;
             LinkedList<ScanRes> ll = null;
@@ -149,6 +238,9 @@ class SCElem implements SCElemI {
             }
         }
 
+        if (lres.size() < minRows)
+            return null;
+
         // Converting result to two-dimensional array
         ScanRes[][] res = new ScanRes[lres.size()][];
         int i = 0;
@@ -226,9 +318,35 @@ class SCElem implements SCElemI {
         if (DBG) P.v("- End loop : " + depth);
     }
 
-    @Override
-    public float
-    similarity(SCElemI ei) {
+    private float
+    calcMaxWeight(ScanRes[][] r) {
+        mMaxW = -1.0f;
+        switch (getPolicy().getEngine()) {
+        case DP:
+            mMaxW = DPScorer.maxWeight(getPolicy(), r);
+            break;
+
+        case DNLOOP:
+            new DNLoop(r,
+                       new DNLoop.IteratorListener() {
+                           @Override
+                           public boolean
+                           iter(DNLoop dnl, Object[] oVals) {
+                               return SCElem.this.dnlInterate(dnl, oVals);
+                           }
+                           @Override
+                           public void
+                           end(DNLoop dnl, int depth) {
+                               SCElem.this.dnlEndLoop(dnl, depth);
+                           }
+                       }).start(getPolicy());
+            break;
+        }
+        return mMaxW;
+    }
+
+    private SCElem
+    checkArgElem(SCElemI ei) {
         if (!(ei instanceof SCElem))
             throw new IllegalArgumentException();
         SCElem e = (SCElem)ei;
@@ -236,24 +354,20 @@ class SCElem implements SCElemI {
         if (null == e.getElements()
             || null == getElements())
             throw new IllegalArgumentException();
+        return e;
+    }
 
-        ScanRes[][] r = scanSimiarElems(getPolicy(), getElements(), e.getElements());
-        mMaxW = -1.0f;
-        float maxS = getMaximumSimilarity(getPolicy(), getElements());
-        float lenDiffDeduction = getLengthDiffDeduction(getPolicy(), getElements(), e.getElements());
-        new DNLoop(r,
-                   new DNLoop.IteratorListener() {
-                       @Override
-                       public boolean
-                       iter(DNLoop dnl, Object[] oVals) {
-                           return SCElem.this.dnlInterate(dnl, oVals);
-                       }
-                       @Override
-                       public void
-                       end(DNLoop dnl, int depth) {
-                           SCElem.this.dnlEndLoop(dnl, depth);
-                       }
-                   }).start(getPolicy());
+    @Override
+    public float
+    similarity(SCElemI ei) {
+        SCElem e = checkArgElem(ei);
+
+        ScanRes[][] r = scanSimiarElems(getPolicy(), getElements(), e.getElements(), 0);
+        float maxS = getMaximumSimilarity(getPolicy(), getElements().length);
+        float lenDiffDeduction = getLengthDiffDeduction(getEnableLengthDiff(),
+                                                        getElements().length,
+                                                        e.getElements().length);
+        calcMaxWeight(r);
 
         if (DBG) P.v("mMaxW : " + mMaxW
                      + " / maxS : " + maxS
@@ -261,4 +375,39 @@ class SCElem implements SCElemI {
                      + " => " + (mMaxW / maxS * lenDiffDeduction));
         return mMaxW / maxS * lenDiffDeduction;
     }
+
+    /**
+     * Same with "similarity(ei) > threshold".
+     * But, comparison stops as soon as it is clear that similarity cannot exceed threshold.
+     * NOTE
+     * This assumes that similarity between elements is not larger than 1.0f.
+     * (ex. SCElemTok and SCElemChar)
+     * @param ei
+     * @param threshold
+     * @return
+     */
+    boolean
+    exceeds(SCElemI ei, float threshold) {
+        SCElem e = checkArgElem(ei);
+
+        float maxS = getMaximumSimilarity(getPolicy(), getElements().length);
+        float lenDiffDeduction = getLengthDiffDeduction(getEnableLengthDiff(),
+                                                        getElements().length,
+                                                        e.getElements().length);
+        int minRows = getMinMatches(getPolicy(), getElements().length,
+                                    maxS, lenDiffDeduction,
+                                    threshold, new float[getElements().length + 1]);
+        if (minRows > getElements().length) {
+            if (DBG) P.v("Rejected before scanning");
+            return false;
+        }
+
+        ScanRes[][] r = scanSimiarElems(getPolicy(), getElements(), e.getElements(), minRows);
+        if (null == r) {
+            if (DBG) P.v("Rejected while scanning");
+            return false;
+        }
+        calcMaxWeight(r);
+        return mMaxW / maxS * lenDiffDeduction > threshold;
+    }
 }
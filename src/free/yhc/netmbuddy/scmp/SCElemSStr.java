@@ -36,8 +36,15 @@ class SCElemSStr extends SCElem {
         EXACT_WORD,
     };
 
-    static SCElemSStr
-    create(Type ty, String str, String delimiterRegex) {
+    /**
+     * @param str
+     * @param delimiterRegex
+     *   null to use default delimiter.
+     * @return
+     *   non-empty tokens.
+     */
+    static String[]
+    tokenize(String str, String delimiterRegex) {
         if (null == delimiterRegex)
             delimiterRegex = DEF_DELIMITER_REGEX;
 
@@ -47,7 +54,12 @@ class SCElemSStr extends SCElem {
             if (!s.isEmpty())
                 l.addLast(s);
         }
-        return new SCElemSStr(l.toArray(new String[0]), ty);
+        return l.toArray(new String[0]);
+    }
+
+    static SCElemSStr
+    create(Type ty, String str, String delimiterRegex) {
+        return new SCElemSStr(tokenize(str, delimiterRegex), ty);
     }
 
     private SCElemSStr(String[] toks, Type ty) {
@@ -0,0 +1,117 @@
+/*****************************************************************************
+ *    Copyright (C) 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.scmp;
+
+import free.yhc.netmbuddy.utils.Utils;
+
+// Compares two SCTokStrs.
+// Result is exactly same with the one of "SCElemSStr(Type.EXACT_WORD).similarity()".
+// Scan results are stored at primitive buffers that are reused.
+// So, there is no allocation once buffers are large enough.
+// This is NOT thread-safe. Use one instance per thread.
+class SCTokCmp {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(SCTokCmp.class);
+
+    // Scan result. See DPScorer.maxWeight()
+    private int[]   mRowS   = new int[16];
+    private int[]   mIdx    = new int[16];
+    private float[] mSim    = new float[16];
+    private float[] mUbs    = new float[16]; // upper bounds
+    private final DPScorer.Buffer mDpBuf = new DPScorer.Buffer();
+
+    private void
+    addEntry(int e, int i, float sim) {
+        if (e >= mIdx.length) {
+            int[] idx = new int[mIdx.length * 2];
+            float[] sims = new float[mIdx.length * 2];
+            System.arraycopy(mIdx, 0, idx, 0, e);
+            System.arraycopy(mSim, 0, sims, 0, e);
+            mIdx = idx;
+            mSim = sims;
+        }
+        mIdx[e] = i;
+        mSim[e] = sim;
+    }
+
+    /**
+     * See SCElem.scanSimiarElems()
+     * @return
+     *   number of rows. -1 if number of rows cannot reach 'minRows'.
+     */
+    private int
+    scan(SCmpPolicy policy, SCTokStr ts0, SCTokStr ts1, int minRows) {
+        final int n0 = ts0.nrTokens();
+        final int n1 = ts1.nrTokens();
+        if (mRowS.length < n0 + 1)
+            mRowS = new int[(n0 + 1) * 2];
+
+        int nr = 0; // number of rows
+        int e = 0;  // number of entries
+        mRowS[0] = 0;
+        for (int t0 = 0; t0 < n0; t0++) {
+            // Early exit. Even if all remaining tokens match, 'minRows' cannot be reached.
+            if (nr + (n0 - t0) < minRows)
+                return -1;
+            int e0 = e;
+            for (int t1 = 0; t1 < n1; t1++) {
+                float similarity = ts0.tokenEquals(t0, ts1, t1)? 1.0f: 0.0f;
+                if (similarity >= policy.getCmpThreshold())
+                    addEntry(e++, t1 + 1, similarity);
+            }
+            if (e > e0)
+                mRowS[++nr] = e;
+        }
+        return nr < minRows? -1: nr;
+    }
+
+    float
+    similarity(SCTokStr ts0, SCTokStr ts1, boolean enableLenDiff, SCmpPolicy policy) {
+        int nr = scan(policy, ts0, ts1, 0);
+        float maxS = SCElem.getMaximumSimilarity(policy, ts0.nrTokens());
+        float lenDiffDeduction = SCElem.getLengthDiffDeduction(enableLenDiff,
+                                                               ts0.nrTokens(),
+                                                               ts1.nrTokens());
+        float maxW = DPScorer.maxWeight(policy, nr, mRowS, mIdx, mSim, mDpBuf);
+        return maxW / maxS * lenDiffDeduction;
+    }
+
+    /**
+     * See SCElem.exceeds()
+     */
+    boolean
+    exceeds(SCTokStr ts0, SCTokStr ts1, boolean enableLenDiff, SCmpPolicy policy, float threshold) {
+        final int n0 = ts0.nrTokens();
+        float maxS = SCElem.getMaximumSimilarity(policy, n0);
+        float lenDiffDeduction = SCElem.getLengthDiffDeduction(enableLenDiff, n0, ts1.nrTokens());
+        if (mUbs.length < n0 + 1)
+            mUbs = new float[(n0 + 1) * 2];
+        int minRows = SCElem.getMinMatches(policy, n0, maxS, lenDiffDeduction, threshold, mUbs);
+        if (minRows > n0)
+            return false;
+
+        int nr = scan(policy, ts0, ts1, minRows);
+        if (nr < 0)
+            return false;
+        float maxW = DPScorer.maxWeight(policy, nr, mRowS, mIdx, mSim, mDpBuf);
+        return maxW / maxS * lenDiffDeduction > threshold;
+    }
+}
@@ -0,0 +1,171 @@
+/*****************************************************************************
+ *    Copyright (C) 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.scmp;
+
+import free.yhc.netmbuddy.utils.Utils;
+
+// TokStr : Tokenized String
+// Compact version of "SCElemSStr(Type.EXACT_WORD)".
+// Characters are stored after case-folding and tokens are kept as offsets.
+// Buffers are reused by 'set()'. So, there is no allocation once buffers are large enough.
+class SCTokStr {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(SCTokStr.class);
+
+    // Delimiter between tokens of normalized string.
+    static final char NORMALIZED_DELIMITER = ' ';
+
+    private char[]  mCs     = new char[64];
+    private int[]   mTokS   = new int[16]; // start offset of token
+    private int[]   mTokE   = new int[16]; // end offset of token (exclusive)
+    private int[]   mTokH   = new int[16]; // hash of token
+    private int     mNrToks = 0;
+
+    /**
+     * Same with SCElemSStr.DEF_DELIMITER_REGEX
+     */
+    static boolean
+    isDelimiter(char c) {
+        switch (c) {
+        // \s
+        case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+        case '~': case '(': case ')': case '.': case ',': case '-': case '\\':
+        case '*': case '&': case '|': case '^': case '%': case '$': case '#':
+        case '@': case '!': case '`': case '\'': case '"': case '?': case '/':
+        case '>': case '<': case '_': case '+': case '=': case '[': case ']':
+        case '{': case '}':
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Two characters are same in "String.equalsIgnoreCase()" if and only if
+     *   folded characters are same.
+     */
+    static char
+    foldCase(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private void
+    addToken(int s, int e, int h) {
+        if (mNrToks >= mTokS.length) {
+            int[] tokS = new int[mTokS.length * 2];
+            int[] tokE = new int[mTokS.length * 2];
+            int[] tokH = new int[mTokS.length * 2];
+            System.arraycopy(mTokS, 0, tokS, 0, mNrToks);
+            System.arraycopy(mTokE, 0, tokE, 0, mNrToks);
+            System.arraycopy(mTokH, 0, tokH, 0, mNrToks);
+            mTokS = tokS;
+            mTokE = tokE;
+            mTokH = tokH;
+        }
+        mTokS[mNrToks] = s;
+        mTokE[mNrToks] = e;
+        mTokH[mNrToks] = h;
+        mNrToks++;
+    }
+
+    private void
+    set(String str, boolean normalized) {
+        final int len = str.length();
+        if (mCs.length < len)
+            mCs = new char[len * 2];
+        mNrToks = 0;
+
+        int s = -1; // start of current token
+        int h = 0;
+        for (int i = 0; i < len; i++) {
+            char c = str.charAt(i);
+            if (normalized? NORMALIZED_DELIMITER == c: isDelimiter(c)) {
+                if (s >= 0)
+                    addToken(s, i, h);
+                s = -1;
+            } else {
+                if (!normalized)
+                    c = foldCase(c);
+                if (s < 0) {
+                    s = i;
+                    h = 0;
+                }
+                h = 31 * h + c;
+            }
+            mCs[i] = c;
+        }
+        if (s >= 0)
+            addToken(s, len, h);
+    }
+
+    void
+    set(String str) {
+        set(str, false);
+    }
+
+    /**
+     * @param normstr
+     *   string made by 'normalize()'. Characters are already case-folded.
+     */
+    void
+    setNormalized(String normstr) {
+        set(normstr, true);
+    }
+
+    /**
+     * Tokens are joined with 'NORMALIZED_DELIMITER'.
+     */
+    String
+    normalize() {
+        StringBuilder sb = new StringBuilder();
+        for (int t = 0; t < mNrToks; t++) {
+            if (t > 0)
+                sb.append(NORMALIZED_DELIMITER);
+            sb.append(mCs, mTokS[t], mTokE[t] - mTokS[t]);
+        }
+        return sb.toString();
+    }
+
+    int
+    nrTokens() {
+        return mNrToks;
+    }
+
+    String
+    getToken(int t) {
+        return new String(mCs, mTokS[t], mTokE[t] - mTokS[t]);
+    }
+
+    boolean
+    tokenEquals(int t, SCTokStr ts, int tt) {
+        if (mTokH[t] != ts.mTokH[tt])
+            return false;
+        int len = mTokE[t] - mTokS[t];
+        if (len != ts.mTokE[tt] - ts.mTokS[tt])
+            return false;
+        int i = mTokS[t];
+        int j = ts.mTokS[tt];
+        while (len-- > 0) {
+            if (mCs[i++] != ts.mCs[j++])
+                return false;
+        }
+        return true;
+    }
+}
@@ -26,10 +26,47 @@ public class SCmp {
     private static final boolean DBG = false;
     private static final Utils.Logger P = new Utils.Logger(SCmp.class);
 
-    private SCElemI mBaseElem;
+    private static final SCmpPolicy sDefaultPolicy = new SCmpPolicy();
+
+    // Buffers reused at each thread.
+    private static final ThreadLocal<Scratch> sScratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch
+        initialValue() {
+            return new Scratch();
+        }
+    };
+
+    // Base string. This is not changed after 'setCmpParameter()'.
+    private final SCTokStr  mBase = new SCTokStr();
+    private boolean         mEnableLenDiff = false;
+    private SCmpPolicy      mPolicy = sDefaultPolicy;
+    // Used only for SCmpPolicy.Engine.DNLOOP
+    private SCElem          mBaseElem;
+
+    private static class Scratch {
+        final SCTokStr  ts0 = new SCTokStr();
+        final SCTokStr  ts1 = new SCTokStr();
+        final SCTokCmp  cmp = new SCTokCmp();
+    }
+
+    private static boolean
+    useTokStr(SCmpPolicy policy) {
+        // DNLoop engine is kept to verify other engines.
+        // So, original implementation is used.
+        return SCmpPolicy.Engine.DNLOOP != policy.getEngine();
+    }
 
     public void
     setCmpParameter(String baseStr, boolean enableLenDiff, SCmpPolicy policy) {
+        mBase.set(baseStr);
+        mEnableLenDiff = enableLenDiff;
+        mPolicy = (null != policy)? policy: sDefaultPolicy;
+        if (useTokStr(mPolicy)) {
+            mBaseElem = null;
+            return;
+        }
+
         SCElemSStr es = SCElemSStr.create(SCElemSStr.Type.EXACT_WORD, baseStr, null);
         es.setEnableLengthDiff(enableLenDiff);
         if (null != policy)
@@ -39,6 +76,15 @@ public class SCmp {
 
     public float
     similarity(String s) {
+        if (useTokStr(mPolicy)) {
+            Scratch scr = sScratch.get();
+            scr.ts1.set(s);
+            // Performance drop but better accuracy
+            float s0 = scr.cmp.similarity(mBase, scr.ts1, mEnableLenDiff, mPolicy);
+            float s1 = scr.cmp.similarity(scr.ts1, mBase, false, sDefaultPolicy);
+            return Utils.max(s0, s1);
+        }
+
         SCElemSStr es = SCElemSStr.create(SCElemSStr.Type.EXACT_WORD, s, null);
         // Performance drop but better accuracy
         float s0 =  mBaseElem.similarity(es);
@@ -46,8 +92,105 @@ public class SCmp {
         return Utils.max(s0, s1);
     }
 
+    private boolean
+    exceeds(SCTokStr ts, float threshold) {
+        // Second direction is not required if first one already exceeds threshold.
+        SCTokCmp cmp = sScratch.get().cmp;
+        return cmp.exceeds(mBase, ts, mEnableLenDiff, mPolicy, threshold)
+               || cmp.exceeds(ts, mBase, false, sDefaultPolicy, threshold);
+    }
+
+    /**
+     * Same with "similarity(s) > threshold", but faster.
+     * Comparison stops as soon as result is decided.
+     * @param s
+     * @param threshold
+     * @return
+     */
+    public boolean
+    exceeds(String s, float threshold) {
+        if (useTokStr(mPolicy)) {
+            SCTokStr ts = sScratch.get().ts1;
+            ts.set(s);
+            return exceeds(ts, threshold);
+        }
+
+        SCElemSStr es = SCElemSStr.create(SCElemSStr.Type.EXACT_WORD, s, null);
+        // Second direction is not required if first one already exceeds threshold.
+        return mBaseElem.exceeds(es, threshold)
+               || es.exceeds(mBaseElem, threshold);
+    }
+
+    /**
+     * Same with 'exceeds(s, threshold)'.
+     * But, tokens are read from normalized string without parsing.
+     * @param normstr
+     *   string made by 'normalize()'.
+     * @param threshold
+     * @return
+     */
+    public boolean
+    exceedsNormalized(String normstr, float threshold) {
+        if (useTokStr(mPolicy)) {
+            SCTokStr ts = sScratch.get().ts1;
+            ts.setNormalized(normstr);
+            return exceeds(ts, threshold);
+        }
+        // Normalized string has same tokens with original one.
+        return exceeds(normstr, threshold);
+    }
+
+    /**
+     * Split string into tokens with the same rule used to compare strings.
+     * Tokens are case-folded, because tokens are compared ignoring case.
+     * Two strings that don't share any token always have negative similarity.
+     * @param s
+     * @return
+     */
+    public static String[]
+    tokenize(String s) {
+        return tokenizeNormalized(normalize(s));
+    }
+
+    /**
+     * Normalized string : case-folded tokens joined with one space.
+     * Delimiters(punctuations, white spaces) are all removed.
+     * Comparing normalized string gives same result with comparing original one.
+     * @param s
+     * @return
+     */
+    public static String
+    normalize(String s) {
+        SCTokStr ts = sScratch.get().ts0;
+        ts.set(s);
+        return ts.normalize();
+    }
+
+    /**
+     * @param normstr
+     *   string made by 'normalize()'.
+     * @return
+     */
+    public static String[]
+    tokenizeNormalized(String normstr) {
+        if (normstr.isEmpty())
+            return new String[0];
+        return normstr.split("" + SCTokStr.NORMALIZED_DELIMITER);
+    }
+
     public static float
     similarity(String s0, String s1, boolean enableLenDiff, SCmpPolicy policy) {
+        if (null == policy || useTokStr(policy)) {
+            Scratch scr = sScratch.get();
+            scr.ts0.set(s0);
+            scr.ts1.set(s1);
+            if (null == policy)
+                policy = sDefaultPolicy;
+            float sim0 = scr.cmp.similarity(scr.ts0, scr.ts1, false, policy);
+            float sim1 = scr.cmp.similarity(scr.ts1, scr.ts0, false, policy);
+            return Utils.max(sim0, sim1);
+        }
+
         SCElemSStr estr0 = SCElemSStr.create(SCElemSStr.Type.EXACT_WORD, s0, null);
         SCElemSStr estr1 = SCElemSStr.create(SCElemSStr.Type.EXACT_WORD, s1, null);
         if (null != policy) {
@@ -58,4 +201,4 @@ public class SCmp {
         float sim1 = estr1.similarity(estr0);
         return Utils.max(sim0, sim1);
     }
-}
\ No newline at end of file
+}
@@ -31,21 +31,38 @@ public class SCmpPolicy {
     // values whose similarity is smaller than "scmpThreshold", are ignored.
     // Larger value(close to 1.0f) leads to better performance.
     static final float DEF_SCMP_THRESHOLD   = 0.7f;
+    static final Engine DEF_ENGINE          = Engine.DP;
 
     private final float mOrderCoeff;
     private final float mContAdv;
     private final float mCmpThreshold;
+    private final Engine mEngine;
+
+    /**
+     * Engine used to find maximum weight among all possible element-matchings.
+     * Both engines give same result.
+     */
+    public static enum Engine {
+        // Dynamic programming. Polynomial time.
+        DP,
+        // Iterate all combinations with DNLoop. Exponential time.
+        // This is kept to verify DP engine.
+        DNLOOP,
+    }
 
     public SCmpPolicy() {
-        mOrderCoeff = DEF_ORDER_COEFF;
-        mContAdv = DEF_CONT_ADV;
-        mCmpThreshold = DEF_SCMP_THRESHOLD;
+        this(DEF_ORDER_COEFF, DEF_CONT_ADV, DEF_SCMP_THRESHOLD);
     }
 
     public SCmpPolicy(float orderCoeff, float contAdv, float scmpThreshold) {
+        this(orderCoeff, contAdv, scmpThreshold, DEF_ENGINE);
+    }
+
+    public SCmpPolicy(float orderCoeff, float contAdv, float scmpThreshold, Engine engine) {
         mOrderCoeff = orderCoeff;
         mContAdv = contAdv;
         mCmpThreshold = scmpThreshold;
+        mEngine = engine;
     }
 
     public float
@@ -62,4 +79,9 @@ public class SCmpPolicy {
     getCmpThreshold() {
         return mCmpThreshold;
     }
+
+    public Engine
+    getEngine() {
+        return mEngine;
+    }
 }
\ No newline at end of file
@@ -34,6 +34,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import free.yhc.netmbuddy.R;
+import free.yhc.netmbuddy.db.DB;
 import free.yhc.netmbuddy.model.Policy;
 import free.yhc.netmbuddy.share.Share.Err;
 import free.yhc.netmbuddy.share.Share.ExporterI;
@@ -77,6 +78,8 @@ class ExporterPlaylist implements ExporterI {
     @Override
     public Err
     execute() {
+        // Volumes of videos may not be written to DB yet.
+        DB.get().flushPendingWrites();
         JSONObject jsonPl = Json.playlistToJson(_mPlid);
         JSONObject jsonMeta = Json.createMetaJson(Type.PLAYLIST);
         JSONObject jo = new JSONObject();
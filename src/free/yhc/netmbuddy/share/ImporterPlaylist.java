@@ -49,21 +49,20 @@ class ImporterPlaylist implements ImporterI {
     private final JSONObject            mJo;
     private final MultiThreadRunner     mMtrunner;
 
+    // Load thumbnail and prepare video to insert.
+    // Videos are inserted to DB in batches. See YTUtils.InsertVideoBatch.
     static class ImportVideoJob extends MultiThreadRunner.Job<Err> {
-        private final long          _mPlid; // playlist id to import to
         private final JSONObject    _mJov;  // Video JSON Object.
-        private final AtomicInteger _mSuccess;
+        private final YTUtils.InsertVideoBatch _mBatch; // prepared videos are added to here.
         private final AtomicInteger _mFail;
 
         ImportVideoJob(float progWeight,
                        JSONObject jov,
-                       long plid,
-                       AtomicInteger success,
+                       YTUtils.InsertVideoBatch batch,
                        AtomicInteger fail) {
             super(true, progWeight);
-            _mPlid = plid;
             _mJov = jov;
-            _mSuccess = success;
+            _mBatch = batch;
             _mFail = fail;
         }
 
@@ -100,20 +99,20 @@ class ImporterPlaylist implements ImporterI {
                 // It takes too much time.
                 // So, a kind of HACK is used to get thumbnail URL from youtube video id.
                 // see comments of 'YTHacker.getYtVideoThumbnailUrl()' for details.
-                if (YTUtils.insertVideoToPlaylist(_mPlid,
-                                                  ytvid,
-                                                  title,
-                                                  author,
-                                                  playtm,
-                                                  volume,
-                                                  bookmarks))
+                DB.InsertVideoArg arg = YTUtils.loadInsertVideoArg(ytvid,
+                                                                   title,
+                                                                   author,
+                                                                   playtm,
+                                                                   volume,
+                                                                   bookmarks);
+                if (null != arg) {
+                    _mBatch.add(arg);
                     err = Err.NO_ERR;
+                }
             } catch (JSONException e) {
                 return Err.INVALID_SHARE;
             } finally {
-                if (Err.NO_ERR == err)
-                    _mSuccess.incrementAndGet();
-                else
+                if (Err.NO_ERR != err)
                     _mFail.incrementAndGet();
             }
             return err;
@@ -209,16 +208,21 @@ class ImporterPlaylist implements ImporterI {
                 }
             });
 
-            // Append jobs to load/add videos
-            for (int i = 0; i < jarr.length(); i++) {
-                mMtrunner.appendJob(new ImportVideoJob(jobWeight,
-                                                       jarr.getJSONObject(i),
-                                                       plid,
-                                                       ir.success,
-                                                       ir.fail));
-            }
+            // Append jobs to load videos
+            YTUtils.InsertVideoBatch batch = new YTUtils.InsertVideoBatch(plid, ir.success, ir.fail);
+            try {
+                for (int i = 0; i < jarr.length(); i++) {
+                    mMtrunner.appendJob(new ImportVideoJob(jobWeight,
+                                                           jarr.getJSONObject(i),
+                                                           batch,
+                                                           ir.fail));
+                }
 
-            mMtrunner.waitAllDone();
+                mMtrunner.waitAllDone();
+            } finally {
+                // Videos already loaded are inserted even if interrupted.
+                batch.flush();
+            }
             ir.err = Err.NO_ERR;
         } catch (IllegalArgumentException e) {
             ir.err = Err.INVALID_SHARE;
@@ -116,15 +116,13 @@ class Json {
         final int COLI_AUTHOR   = 2;
         final int COLI_VOLUME   = 3;
         final int COLI_PLAYTIME = 4;
-        final int COLI_BOOKMARKS= 5;
         Cursor c = DB.get().queryVideo(vid,
                                        new ColVideo[] {
                 ColVideo.VIDEOID,
                 ColVideo.TITLE,
                 ColVideo.AUTHOR,
                 ColVideo.VOLUME,
-                ColVideo.PLAYTIME,
-                ColVideo.BOOKMARKS
+                ColVideo.PLAYTIME
         });
 
         if (!c.moveToFirst()) {
@@ -144,7 +142,8 @@ class Json {
                 jo.put(FAUTHOR,   c.getString(COLI_AUTHOR));
 
             jo.put(FPLAYTIME, c.getInt(COLI_PLAYTIME));
-            jo.put(FBOOKMARKS, c.getString(COLI_BOOKMARKS));
+            // Bookmarks are shared with the string format used until DB version 4.
+            jo.put(FBOOKMARKS, DB.get().getBookmarksString(vid));
             int vol = c.getInt(COLI_VOLUME);
             if (Policy.DEFAULT_VIDEO_VOLUME != vol)
                 jo.put(FVOLUME,   vol);
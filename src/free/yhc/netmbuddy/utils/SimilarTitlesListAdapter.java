@@ -37,14 +37,12 @@ class SimilarTitlesListAdapter extends BaseAdapter {
     private static final Utils.Logger P = new Utils.Logger(SimilarTitlesListAdapter.class);
 
     // Below value SHOULD match queries of 'createCursor()'
-    private static final int COLI_VIDEOID       = 0;
-    private static final int COLI_TITLE         = 1;
-    private static final int COLI_AUTHOR        = 2;
-    private static final int COLI_PLAYTIME      = 3;
+    private static final int COLI_TITLE         = 0;
+    private static final int COLI_AUTHOR        = 1;
+    private static final int COLI_PLAYTIME      = 2;
 
     private static final ColVideo[] sQueryCols
-        = new ColVideo[] { ColVideo.VIDEOID,
-                           ColVideo.TITLE,
+        = new ColVideo[] { ColVideo.TITLE,
                            ColVideo.AUTHOR,
                            ColVideo.PLAYTIME,
                            };
@@ -52,6 +50,9 @@ class SimilarTitlesListAdapter extends BaseAdapter {
     private final DB    mDb;
     private Context     mContext;
     private long[]      mVids;;
+    // Index of group that each video belongs to. null if videos are not grouped.
+    private int[]       mGroupOf = null;
+    private int[]       mGroupSizes = null;
 
     SimilarTitlesListAdapter(Context    context,
                              long[]     vids) {
@@ -61,6 +62,37 @@ class SimilarTitlesListAdapter extends BaseAdapter {
         mVids = vids;
     }
 
+    /**
+     * Videos of each group are listed in order, and separator is shown at the start of each group.
+     * @param groups
+     *   ids of videos in each group.
+     */
+    SimilarTitlesListAdapter(Context    context,
+                             long[][]   groups) {
+        super();
+        mDb = DB.get();
+        mContext = context;
+        int n = 0;
+        for (long[] g : groups)
+            n += g.length;
+        mVids = new long[n];
+        mGroupOf = new int[n];
+        mGroupSizes = new int[groups.length];
+        n = 0;
+        for (int i = 0; i < groups.length; i++) {
+            System.arraycopy(groups[i], 0, mVids, n, groups[i].length);
+            for (int j = 0; j < groups[i].length; j++)
+                mGroupOf[n++] = i;
+            mGroupSizes[i] = groups[i].length;
+        }
+    }
+
+    private boolean
+    isGroupStart(int position) {
+        return null != mGroupOf
+               && (0 == position || mGroupOf[position - 1] != mGroupOf[position]);
+    }
+
 
     @Override
     public int
@@ -96,6 +128,15 @@ class SimilarTitlesListAdapter extends BaseAdapter {
         TextView  playtmv    = (TextView)v.findViewById(R.id.playtime);
         TextView  uploadtmv  = (TextView)v.findViewById(R.id.uploadedtime);
 
+        TextView  groupv     = (TextView)v.findViewById(R.id.group_separator);
+
+        if (isGroupStart(position)) {
+            int g = mGroupOf[position];
+            groupv.setVisibility(View.VISIBLE);
+            groupv.setText(mContext.getResources().getString(R.string.msg_title_dup_group,
+                                                              g + 1, mGroupSizes[g]));
+        } else
+            groupv.setVisibility(View.GONE);
         checkv.setVisibility(View.GONE);
         Cursor c = mDb.queryVideo(mVids[position], sQueryCols);
         c.moveToFirst(); // this SHOULD always succeed.
@@ -109,8 +150,8 @@ class SimilarTitlesListAdapter extends BaseAdapter {
             authorv.setVisibility(View.GONE);
         uploadtmv.setVisibility(View.GONE);
         playtmv.setText(Utils.secsToMinSecText(c.getInt(COLI_PLAYTIME)));
-        byte[] thumbnailData = (byte[])DB.get().getVideoInfo(c.getString(COLI_VIDEOID), ColVideo.THUMBNAIL);
-        UiUtils.setThumbnailImageView(thumbnailv, thumbnailData);
+        UiUtils.setThumbnailImageView(thumbnailv,
+                                      ThumbnailCache.get().getVideoThumbnail(mVids[position]));
 
         c.close();
 
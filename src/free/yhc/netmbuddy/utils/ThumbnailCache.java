@@ -0,0 +1,291 @@
+/*****************************************************************************
+ *    Copyright (C) 2012, 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import free.yhc.netmbuddy.db.ColPlaylist;
+import free.yhc.netmbuddy.db.ColVideo;
+import free.yhc.netmbuddy.db.DB;
+import free.yhc.netmbuddy.db.DBChangeLog;
+import free.yhc.netmbuddy.model.Policy;
+
+// App-wide memory cache of decoded thumbnail bitmaps of video and playlist.
+// Bitmaps are evicted in LRU order when total size exceeds the budget.
+// Entries are invalidated by reading change logs of video/playlist table (See DBChangeLog).
+//
+// NOTE
+// Bitmap from this cache may be shared by several ImageViews.
+// So, it SHOULD NOT be recycled (See 'UiUtils.setThumbnailImageView()').
+public class ThumbnailCache {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(ThumbnailCache.class);
+
+    private static final String KEY_PREFIX_VIDEO    = "v";
+    private static final String KEY_PREFIX_PLAYLIST = "p";
+    // Size of entry having no thumbnail.
+    private static final int    EMPTY_ENTRY_SIZE    = 64;
+
+    // Columns having thumbnail data.
+    private static final DB.Col[] sVideoThumbnailCols       = new DB.Col[] { ColVideo.THUMBNAIL };
+    private static final DB.Col[] sPlaylistThumbnailCols    = new DB.Col[] { ColPlaylist.THUMBNAIL };
+
+    private static ThumbnailCache sInstance = null;
+
+    // Bitmaps that have ever been handed out by this cache.
+    // Weak reference is used not to keep evicted bitmaps alive.
+    private static final WeakHashMap<Bitmap, Boolean> sShared = new WeakHashMap<Bitmap, Boolean>();
+
+    private final long mBudget;
+    private long       mSize = 0;
+    // Increased whenever cached entries are invalidated.
+    // Entry loaded before invalidation SHOULD NOT be put to the cache.
+    private int        mGeneration = 0;
+    // Versions of table change logs that are already applied to the cache.
+    private long       mVidTblVersion;
+    private long       mPlTblVersion;
+    // access-ordered. So, eldest entry is least-recently-used one.
+    private final LinkedHashMap<String, Entry> mMap
+        = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+
+    static class Entry {
+        // null if there is no thumbnail.
+        final Bitmap    bm;
+        final int       sz;
+
+        Entry(Bitmap aBm) {
+            bm = aBm;
+            sz = (null == bm)? EMPTY_ENTRY_SIZE: bm.getRowBytes() * bm.getHeight();
+        }
+    }
+
+    private ThumbnailCache() {
+        mBudget = Runtime.getRuntime().maxMemory() / Policy.THUMBNAIL_CACHE_HEAP_FRACTION;
+        mVidTblVersion = DB.get().getVideoTableChangeLog().version();
+        mPlTblVersion = DB.get().getPlaylistTableChangeLog().version();
+    }
+
+    public static synchronized ThumbnailCache
+    get() {
+        if (null == sInstance)
+            sInstance = new ThumbnailCache();
+        return sInstance;
+    }
+
+    /**
+     * @param bm
+     * @return
+     *   true if bitmap is (or was) handed out by this cache.
+     */
+    static boolean
+    isShared(Bitmap bm) {
+        synchronized (sShared) {
+            return null != sShared.get(bm);
+        }
+    }
+
+    private void
+    removeEntries(String keyPrefix) {
+        Iterator<Map.Entry<String, Entry>> itr = mMap.entrySet().iterator();
+        while (itr.hasNext()) {
+            Map.Entry<String, Entry> e = itr.next();
+            if (e.getKey().startsWith(keyPrefix)) {
+                mSize -= e.getValue().sz;
+                itr.remove();
+            }
+        }
+    }
+
+    private void
+    removeEntry(String key) {
+        Entry e = mMap.remove(key);
+        if (null != e)
+            mSize -= e.sz;
+    }
+
+    /**
+     * @param cs
+     *   changes from 'DBChangeLog.since()'
+     * @param keyPrefix
+     * @param cols
+     *   columns having thumbnail data.
+     * @return
+     *   true if some entries may be invalidated.
+     */
+    private boolean
+    applyChanges(DBChangeLog.Change[] cs, String keyPrefix, DB.Col[] cols) {
+        if (null == cs) {
+            // Too many changes. Row ids may be re-used (ex. importing DB).
+            removeEntries(keyPrefix);
+            return true;
+        }
+        boolean invalidated = false;
+        for (DBChangeLog.Change c : cs) {
+            if (DBChangeLog.Op.INSERT == c.op
+                || !c.mayAffect(cols))
+                continue; // Cached entries are still valid.
+            if (DBChangeLog.Op.RESET == c.op || null == c.ids)
+                removeEntries(keyPrefix);
+            else {
+                for (long id : c.ids)
+                    removeEntry(keyPrefix + id);
+            }
+            invalidated = true;
+        }
+        return invalidated;
+    }
+
+    private void
+    checkInvalidated() {
+        DB db = DB.get();
+        DBChangeLog log = db.getVideoTableChangeLog();
+        long v = log.version();
+        if (v != mVidTblVersion) {
+            if (applyChanges(log.since(mVidTblVersion), KEY_PREFIX_VIDEO, sVideoThumbnailCols))
+                mGeneration++;
+            mVidTblVersion = v;
+        }
+
+        log = db.getPlaylistTableChangeLog();
+        v = log.version();
+        if (v != mPlTblVersion) {
+            if (applyChanges(log.since(mPlTblVersion), KEY_PREFIX_PLAYLIST, sPlaylistThumbnailCols))
+                mGeneration++;
+            mPlTblVersion = v;
+        }
+    }
+
+    private void
+    put(String key, Entry e) {
+        Entry old = mMap.put(key, e);
+        if (null != old)
+            mSize -= old.sz;
+        mSize += e.sz;
+        // Evict least-recently-used ones.
+        Iterator<Entry> itr = mMap.values().iterator();
+        while (mSize > mBudget && itr.hasNext()) {
+            Entry victim = itr.next();
+            if (victim == e)
+                break; // Keep at least newly added one.
+            mSize -= victim.sz;
+            itr.remove();
+        }
+    }
+
+    private static Bitmap
+    decode(byte[] data) {
+        if (null == data || 0 == data.length)
+            return null;
+        Bitmap bm = BitmapFactory.decodeByteArray(data, 0, data.length);
+        if (null != bm) {
+            synchronized (sShared) {
+                sShared.put(bm, true);
+            }
+        }
+        return bm;
+    }
+
+    static String
+    videoKey(long vid) {
+        return KEY_PREFIX_VIDEO + vid;
+    }
+
+    static String
+    playlistKey(long plid) {
+        return KEY_PREFIX_PLAYLIST + plid;
+    }
+
+    /**
+     * @return
+     *   generation of cache that SHOULD be passed to 'load()'.
+     */
+    synchronized int
+    generation() {
+        checkInvalidated();
+        return mGeneration;
+    }
+
+    /**
+     * @param key
+     * @return
+     *   null if it is not cached yet.
+     */
+    synchronized Entry
+    lookup(String key) {
+        checkInvalidated();
+        return mMap.get(key);
+    }
+
+    /**
+     * DB access and decoding is done without holding lock of cache.
+     * So, this can be called at several threads at the same time.
+     * @param generation
+     *   value of 'generation()' read before calling this.
+     */
+    Entry
+    load(int generation, String key, boolean video, long id) {
+        byte[] data = video? DB.get().getVideoThumbnail(id)
+                           : (byte[])DB.get().getPlaylistInfo(id, ColPlaylist.THUMBNAIL);
+        Entry e = new Entry(decode(data));
+        synchronized (this) {
+            checkInvalidated();
+            // Table is changed while loading. So, loaded one may be stale.
+            if (generation == mGeneration)
+                put(key, e);
+        }
+        return e;
+    }
+
+    private Entry
+    getEntry(String key, boolean video, long id) {
+        Entry e = lookup(key);
+        if (null == e)
+            e = load(generation(), key, video, id);
+        return e;
+    }
+
+    /**
+     * @param vid
+     *   BaseColumns._ID of video.
+     * @return
+     *   null if video doesn't have thumbnail.
+     */
+    public Bitmap
+    getVideoThumbnail(long vid) {
+        return getEntry(videoKey(vid), true, vid).bm;
+    }
+
+    /**
+     * @param plid
+     *   BaseColumns._ID of playlist.
+     * @return
+     *   null if playlist doesn't have thumbnail.
+     */
+    public Bitmap
+    getPlaylistThumbnail(long plid) {
+        return getEntry(playlistKey(plid), false, plid).bm;
+    }
+}
@@ -0,0 +1,253 @@
+/*****************************************************************************
+ *    Copyright (C) 2012, 2013 Younghyung Cho. <yhcting77@gmail.com>
+ *
+ *    This file is part of YTMPlayer.
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as
+ *    published by the Free Software Foundation either version 3 of the
+ *    License, or (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License
+ *    (<http://www.gnu.org/licenses/lgpl.html>) for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *****************************************************************************/
+
+package free.yhc.netmbuddy.utils;
+
+import static free.yhc.netmbuddy.utils.Utils.eAssert;
+
+import java.util.LinkedList;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.widget.ImageView;
+import free.yhc.netmbuddy.R;
+import free.yhc.netmbuddy.model.Policy;
+
+// Loads thumbnail to ImageView of list item at background threads.
+// DB access and decoding bitmap are NOT done at UI thread.
+//
+// ImageView is tagged with it's latest request.
+// Because ImageView of list item is recycled, result of old request - request whose
+//   ImageView is tagged with another one - is ignored.
+// Requests are handled in LIFO order. So, recently-shown items are loaded first.
+//
+// Loading is paused while DB is closed (ex. importing DB). See 'pause()'.
+// If DB access fails anyway, place-holder is shown instead of thumbnail.
+//
+// All public interfaces SHOULD be called at UI thread.
+public class ThumbnailLoader {
+    private static final boolean DBG = false;
+    private static final Utils.Logger P = new Utils.Logger(ThumbnailLoader.class);
+
+    // View Tag Key
+    private static final int VTAGKEY_REQ = R.id.thumbnail;
+
+    private static ThumbnailLoader sInstance = null;
+
+    private final ThumbnailCache        mCache  = ThumbnailCache.get();
+    // Pending requests. Newest one is at the end.
+    private final LinkedList<Request>   mQ      = new LinkedList<Request>();
+    // Below values are protected by 'mQ'.
+    private boolean                     mPaused = false;
+    // # of requests being loaded by workers.
+    private int                         mNrBusy = 0;
+
+    private static class Request {
+        final ImageView v;
+        final String    key;
+        final boolean   video;
+        final long      id;
+        // Accessed only at UI thread.
+        boolean         cancelled = false;
+
+        Request(ImageView aV, String aKey, boolean aVideo, long aId) {
+            v = aV;
+            key = aKey;
+            video = aVideo;
+            id = aId;
+        }
+    }
+
+    private class Worker extends Thread {
+        Worker(int n) {
+            super("ThumbnailLoader-" + n);
+            setDaemon(true);
+        }
+
+        private Request
+        nextRequest() throws InterruptedException {
+            synchronized (mQ) {
+                while (mPaused || mQ.isEmpty())
+                    mQ.wait();
+                mNrBusy++;
+                return mQ.removeLast();
+            }
+        }
+
+        private void
+        requestDone() {
+            synchronized (mQ) {
+                mNrBusy--;
+                mQ.notifyAll();
+            }
+        }
+
+        @Override
+        public void
+        run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            while (true) {
+                final Request req;
+                try {
+                    req = nextRequest();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                ThumbnailCache.Entry e = null;
+                try {
+                    e = mCache.lookup(req.key);
+                    if (null == e)
+                        e = mCache.load(mCache.generation(), req.key, req.video, req.id);
+                } catch (RuntimeException ex) {
+                    // DB may be closed or changed under this thread (ex. importing DB).
+                    // Place-holder is shown. Item will be loaded again when it is shown again.
+                    if (DBG) P.w("Fail to load thumbnail : " + req.key + " : " + ex.getMessage());
+                    e = null;
+                } finally {
+                    requestDone();
+                }
+
+                final Bitmap bm = (null == e)? null: e.bm;
+                Utils.getUiHandler().post(new Runnable() {
+                    @Override
+                    public void
+                    run() {
+                        if (req.cancelled
+                            || req != req.v.getTag(VTAGKEY_REQ))
+                            return; // ImageView is already used for another item.
+                        req.v.setTag(VTAGKEY_REQ, null);
+                        UiUtils.setThumbnailImageView(req.v, bm);
+                    }
+                });
+            }
+        }
+    }
+
+    private ThumbnailLoader() {
+        for (int i = 0; i < Policy.THUMBNAIL_LOADER_NR_THREADS; i++)
+            new Worker(i).start();
+    }
+
+    public static ThumbnailLoader
+    get() {
+        eAssert(Utils.isUiThread());
+        if (null == sInstance)
+            sInstance = new ThumbnailLoader();
+        return sInstance;
+    }
+
+    private void
+    load(ImageView v, String key, boolean video, long id) {
+        eAssert(Utils.isUiThread());
+        cancel(v);
+
+        // Cached one is set directly to avoid flickering.
+        ThumbnailCache.Entry e = mCache.lookup(key);
+        if (null != e) {
+            UiUtils.setThumbnailImageView(v, e.bm);
+            return;
+        }
+
+        // Show place-holder until thumbnail is loaded.
+        UiUtils.setThumbnailImageView(v, (Bitmap)null);
+        Request req = new Request(v, key, video, id);
+        v.setTag(VTAGKEY_REQ, req);
+        synchronized (mQ) {
+            mQ.addLast(req);
+            mQ.notifyAll();
+        }
+    }
+
+    /**
+     * Load thumbnail of video to ImageView.
+     * Place-holder image is shown until thumbnail is loaded.
+     * @param v
+     * @param vid
+     *   BaseColumns._ID of video.
+     */
+    public void
+    loadVideoThumbnail(ImageView v, long vid) {
+        load(v, ThumbnailCache.videoKey(vid), true, vid);
+    }
+
+    /**
+     * See 'loadVideoThumbnail'
+     * @param v
+     * @param plid
+     *   BaseColumns._ID of playlist.
+     */
+    public void
+    loadPlaylistThumbnail(ImageView v, long plid) {
+        load(v, ThumbnailCache.playlistKey(plid), false, plid);
+    }
+
+    /**
+     * Cancel pending request of the ImageView.
+     * This is usually called when list item goes out of screen.
+     * @param v
+     */
+    public void
+    cancel(ImageView v) {
+        eAssert(Utils.isUiThread());
+        Request req = (Request)v.getTag(VTAGKEY_REQ);
+        if (null == req)
+            return;
+        req.cancelled = true;
+        v.setTag(VTAGKEY_REQ, null);
+        synchronized (mQ) {
+            mQ.remove(req);
+        }
+    }
+
+    /**
+     * Stop loading thumbnails before closing DB.
+     * Pending requests are dropped, and this returns after requests being loaded are done.
+     * So, workers don't access DB until 'resume()'.
+     * Requests made while paused are loaded after 'resume()'.
+     */
+    public void
+    pause() {
+        eAssert(Utils.isUiThread());
+        synchronized (mQ) {
+            mPaused = true;
+            for (Request req : mQ)
+                req.cancelled = true;
+            mQ.clear();
+            while (mNrBusy > 0) {
+                try {
+                    mQ.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    public void
+    resume() {
+        eAssert(Utils.isUiThread());
+        synchronized (mQ) {
+            mPaused = false;
+            mQ.notifyAll();
+        }
+    }
+}
@@ -59,9 +59,10 @@ import free.yhc.netmbuddy.db.ColVideo;
 import free.yhc.netmbuddy.db.DB;
 import free.yhc.netmbuddy.db.DB.Bookmark;
 import free.yhc.netmbuddy.model.Policy;
+import free.yhc.netmbuddy.model.SimilarTitlesClusterer;
+import free.yhc.netmbuddy.model.SimilarTitlesScanner;
 import free.yhc.netmbuddy.model.YTHacker;
 import free.yhc.netmbuddy.model.YTPlayer;
-import free.yhc.netmbuddy.scmp.SCmp;
 
 public class UiUtils {
     private static final boolean DBG = false;
@@ -480,10 +481,22 @@ public class UiUtils {
         //   is same with new one - See "ImageView.java for details"
         // In this case, ImageView may try to use recycled BitmapDrawable.
         // To avoid this, Bitmap instance is used in all cases.
-        Bitmap thumbnailBm;
+        Bitmap thumbnailBm = null;
         if (null != imgdata && imgdata.length > 0)
             thumbnailBm = BitmapFactory.decodeByteArray(imgdata, 0, imgdata.length);
-        else
+        setThumbnailImageView(v, thumbnailBm);
+    }
+
+    /**
+     * Bitmap from 'ThumbnailCache' is NOT recycled when it is replaced.
+     * See comments of 'setThumbnailImageView(ImageView, byte[])'
+     * @param v
+     * @param thumbnailBm
+     *   null for unknown image.
+     */
+    public static void
+    setThumbnailImageView(ImageView v, Bitmap thumbnailBm) {
+        if (null == thumbnailBm)
             thumbnailBm = sBmIcUnknownImage;
 
         // This assumes that Drawable of ImageView is set only by this function.
@@ -494,7 +507,11 @@ public class UiUtils {
         if (drawable instanceof BitmapDrawable) { // to make sure.
             BitmapDrawable bmd = (BitmapDrawable)drawable;
             Bitmap bitmap = bmd.getBitmap();
-            if (bitmap != sBmIcUnknownImage)
+            if (bitmap == thumbnailBm)
+                return; // nothing to change.
+            // Shared bitmap may be used by other views.
+            if (bitmap != sBmIcUnknownImage
+                && !ThumbnailCache.isShared(bitmap))
                 bitmap.recycle();
         }
 
@@ -605,8 +622,10 @@ public class UiUtils {
                 DB db = DB.get();
                 db.beginTransaction();
                 try {
-                    for (long mid : vids) {
-                        DB.Err err = db.insertVideoToPlaylist(dstPlid, mid);
+                    DB.Err[] errs = db.insertVideosToPlaylist(dstPlid, vids);
+                    for (int i = 0; i < vids.length; i++) {
+                        long mid = vids[i];
+                        DB.Err err = errs[i];
                         if (DB.Err.NO_ERR != err) {
                             // Error Case
                             if (DB.Err.DUPLICATED != err)
@@ -734,6 +753,8 @@ public class UiUtils {
                 final int COLI_TIME_PLAYED  = 5;
                 DateFormat df = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.MEDIUM);
                 DB db = DB.get();
+                // Volume and time played may not be written to DB yet.
+                db.flushPendingWrites();
                 Cursor c = db.queryVideo(vid, new ColVideo[] {
                         ColVideo.TITLE,
                         ColVideo.AUTHOR,
@@ -839,62 +860,33 @@ public class UiUtils {
     showSimilarTitlesDialog(final Activity activity, final String title) {
         DiagAsyncTask.Worker worker = new DiagAsyncTask.Worker() {
             private AtomicReference<Boolean>    mCancelled = new AtomicReference<Boolean>(false);
-            private LinkedList<Long>            mVids = new LinkedList<Long>();
+            private long[]                      mVids = new long[0];
 
             @Override
             public Err
-            doBackgroundWork(DiagAsyncTask task) {
+            doBackgroundWork(final DiagAsyncTask task) {
                 float similarityThreshold = Utils.getPrefTitleSimilarityThreshold();
-                SCmp scmp = new SCmp();
-                scmp.setCmpParameter(title, true, null);
-                Cursor c = null;
+                SimilarTitlesScanner scanner = new SimilarTitlesScanner(title, similarityThreshold);
+                task.publishProgress(0);
                 try {
-                    final int COLI_ID       = 0;
-                    final int COLI_TITLE    = 1;
-                    c = DB.get().queryVideos(new ColVideo[] { ColVideo.ID,
-                                                              ColVideo.TITLE },
-                                             null,
-                                             false);
-                    if (!c.moveToFirst())
-                        return Err.NO_ERR;
-
-                    int maxCnt = c.getCount();
-                    int cnt = 0;
-                    int prevPercent = 0;
-                    int curPercent = 0;
-
-                    task.publishProgress(0);
-                    do {
-                        if (DBG) {
-                            String title = c.getString(COLI_TITLE);
-                            P.v("Calculating similarity : " + title);
-                            float sim = scmp.similarity(title);
-                            P.v("    " + sim);
-                        }
-                        if (similarityThreshold < scmp.similarity(c.getString(COLI_TITLE))) {
-                            mVids.addLast(c.getLong(COLI_ID));
-                            if (mVids.size() >= Policy.MAX_SIMILAR_TITLES_RESULT)
-                                return Err.NO_ERR;
-                        }
-
-                        ++cnt;
-                        curPercent = cnt * 100 / maxCnt;
-                        if (curPercent > prevPercent) {
-                            task.publishProgress(curPercent);
-                            prevPercent = curPercent;
-                        }
-
-                        if (mCancelled.get())
-                            return Err.CANCELLED;
-                    } while (c.moveToNext());
+                    mVids = scanner.scan(mCancelled,
+                                         new SimilarTitlesScanner.OnProgressListener() {
+                                             @Override
+                                             public void
+                                             onProgress(int percent) {
+                                                 task.publishProgress(percent);
+                                             }
+                                         },
+                                         Policy.MAX_SIMILAR_TITLES_RESULT);
+                } catch (InterruptedException e) {
+                    return Err.INTERRUPTED;
                 } catch (Exception e) {
                     e.printStackTrace();
-                } finally {
-                    if (null != c)
-                        c.close();
                 }
-                return Err.NO_ERR;
 
+                if (mCancelled.get())
+                    return Err.CANCELLED;
+                return Err.NO_ERR;
             }
 
             @Override
@@ -906,7 +898,7 @@ public class UiUtils {
             @Override
             public void
             onPostExecute(DiagAsyncTask task, Err result) {
-                if (0 == mVids.size()) {
+                if (0 == mVids.length) {
                     UiUtils.showTextToast(activity, R.string.msg_no_similar_titles);
                     return;
                 }
@@ -917,8 +909,88 @@ public class UiUtils {
                 bldr.setView(lv);
                 final AlertDialog diag = bldr.create();
                 final SimilarTitlesListAdapter adapter
-                    = new SimilarTitlesListAdapter(activity,
-                                                   Utils.convertArrayLongTolong(mVids.toArray(new Long[0])));
+                    = new SimilarTitlesListAdapter(activity, mVids);
+                lv.setAdapter(adapter);
+                diag.show();
+            }
+
+            @Override
+            public void
+            onCancel(DiagAsyncTask task) {
+                mCancelled.set(true);
+            }
+
+            @Override
+            public void
+            onCancelled(DiagAsyncTask task) {
+            }
+        };
+
+        new DiagAsyncTask(activity,
+                          worker,
+                          DiagAsyncTask.Style.PROGRESS,
+                          R.string.searching,
+                          true,
+                          false)
+            .run();
+    }
+
+    /**
+     * Group all videos in DB by similarity of titles.
+     * Groups are stored to DB and then shown as one list - read back from DB.
+     * Videos in the same group are adjacent in the list, and each group starts with separator.
+     * @param activity
+     */
+    public static void
+    showDuplicatedTitlesDialog(final Activity activity) {
+        DiagAsyncTask.Worker worker = new DiagAsyncTask.Worker() {
+            private AtomicReference<Boolean>    mCancelled = new AtomicReference<Boolean>(false);
+            private long[][]                    mGroups = new long[0][];
+
+            @Override
+            public Err
+            doBackgroundWork(final DiagAsyncTask task) {
+                float similarityThreshold = Utils.getPrefTitleSimilarityThreshold();
+                SimilarTitlesClusterer clusterer = new SimilarTitlesClusterer(similarityThreshold);
+                task.publishProgress(0);
+                long[][] groups = clusterer.cluster(mCancelled,
+                                                    new SimilarTitlesClusterer.OnProgressListener() {
+                                                        @Override
+                                                        public void
+                                                        onProgress(int percent) {
+                                                            task.publishProgress(percent);
+                                                        }
+                                                    });
+                if (mCancelled.get())
+                    return Err.CANCELLED;
+
+                DB.get().replaceTitleDupGroups(groups);
+                // Stored groups are used - groups having only one video are already excluded.
+                mGroups = DB.get().getTitleDupGroups();
+                return Err.NO_ERR;
+            }
+
+            @Override
+            public void
+            onPreExecute(DiagAsyncTask task) {
+
+            }
+
+            @Override
+            public void
+            onPostExecute(DiagAsyncTask task, Err result) {
+                if (0 == mGroups.length) {
+                    UiUtils.showTextToast(activity, R.string.msg_no_duplicated_titles);
+                    return;
+                }
+
+                ListView lv = (ListView)UiUtils.inflateLayout(activity, R.layout.similar_title_dialog);
+                AlertDialog.Builder bldr = new AlertDialog.Builder(activity);
+                bldr.setTitle("[" + Utils.getResText(R.string.find_duplicated_titles) + "]");
+                bldr.setView(lv);
+                final AlertDialog diag = bldr.create();
+                final SimilarTitlesListAdapter adapter
+                    = new SimilarTitlesListAdapter(activity, mGroups);
                 lv.setAdapter(adapter);
                 diag.show();
             }
@@ -21,6 +21,7 @@
 package free.yhc.netmbuddy.utils;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -28,6 +29,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
 import java.text.DateFormat;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -662,6 +664,37 @@ public class Utils {
         }
     }
 
+    /**
+     * Copy file by 'FileChannel.transferTo()'.
+     * Data is not copied through java heap. So, this is much faster than 'copy(os, is)'.
+     * @param dst
+     * @param src
+     */
+    public static void
+    copyFile(File dst, File src) throws IOException, InterruptedException {
+        // Interrupt is checked between chunks.
+        final long chunk = 4 * 1024 * 1024;
+        FileInputStream fis = new FileInputStream(src);
+        try {
+            FileOutputStream fos = new FileOutputStream(dst);
+            try {
+                FileChannel ic = fis.getChannel();
+                FileChannel oc = fos.getChannel();
+                long sz = ic.size();
+                long pos = 0;
+                while (pos < sz) {
+                    if (Thread.currentThread().isInterrupted())
+                        throw new InterruptedException();
+                    pos += ic.transferTo(pos, Math.min(chunk, sz - pos), oc);
+                }
+            } finally {
+                fos.close();
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
     public static <K,V> K
     findKey(HashMap<K, V> map, V value) {
         Iterator<K> iter = map.keySet().iterator();
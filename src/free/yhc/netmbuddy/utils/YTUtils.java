@@ -20,6 +20,9 @@
 
 package free.yhc.netmbuddy.utils;
 
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import free.yhc.netmbuddy.R;
 import free.yhc.netmbuddy.db.DB;
 import free.yhc.netmbuddy.model.Policy;
@@ -31,6 +34,79 @@ public class YTUtils {
     private static final boolean DBG = false;
     private static final Utils.Logger P = new Utils.Logger(YTUtils.class);
 
+    /**
+     * Collect videos prepared by 'loadInsertVideoArg()' - usually from several threads -
+     *   and insert them to playlist whenever Policy.DB_MAX_IN_LIST_SIZE videos are collected.
+     * So, thumbnails of only one batch are kept in memory, and videos inserted are kept
+     *   even if loading is interrupted in the middle.
+     * 'flush()' SHOULD be called at the end to insert remaining videos.
+     */
+    public static class InsertVideoBatch {
+        private final long          _mPlid;
+        private final AtomicInteger _mSuccess;
+        private final AtomicInteger _mFail;
+        private final ArrayList<DB.InsertVideoArg> _mArgs
+            = new ArrayList<DB.InsertVideoArg>(Policy.DB_MAX_IN_LIST_SIZE);
+        // Batches are inserted one by one.
+        // Otherwise, same video in different batches may be inserted twice.
+        private final Object        _mInsertLock = new Object();
+
+        /**
+         * @param success
+         *   increased for each video inserted successfully.
+         * @param fail
+         *   increased for each video failed to be inserted.
+         */
+        public InsertVideoBatch(long plid, AtomicInteger success, AtomicInteger fail) {
+            _mPlid = plid;
+            _mSuccess = success;
+            _mFail = fail;
+        }
+
+        private DB.InsertVideoArg[]
+        takeArgs() {
+            DB.InsertVideoArg[] args = _mArgs.toArray(new DB.InsertVideoArg[_mArgs.size()]);
+            _mArgs.clear();
+            return args;
+        }
+
+        private void
+        insert(DB.InsertVideoArg[] args) {
+            if (0 == args.length)
+                return;
+            synchronized (_mInsertLock) {
+                for (DB.Err err : DB.get().insertVideosToPlaylist(_mPlid, args)) {
+                    if (DB.Err.NO_ERR == err)
+                        _mSuccess.incrementAndGet();
+                    else
+                        _mFail.incrementAndGet();
+                }
+            }
+        }
+
+        public void
+        add(DB.InsertVideoArg arg) {
+            DB.InsertVideoArg[] args = null;
+            synchronized (_mArgs) {
+                _mArgs.add(arg);
+                if (_mArgs.size() >= Policy.DB_MAX_IN_LIST_SIZE)
+                    args = takeArgs();
+            }
+            // Insert outside of lock. Other threads can keep adding videos.
+            if (null != args)
+                insert(args);
+        }
+
+        public void
+        flush() {
+            DB.InsertVideoArg[] args;
+            synchronized (_mArgs) {
+                args = takeArgs();
+            }
+            insert(args);
+        }
+    }
+
     public static boolean
     verifyYoutubeVideoId(String ytvid) {
         return 11 == ytvid.length();
@@ -54,6 +130,35 @@ public class YTUtils {
         return YTSearchHelper.loadThumbnail(targ);
     }
 
+    /**
+     * This function download thumbnail image through network synchronously.
+     * Returned value can be used for 'DB.insertVideosToPlaylist()'.
+     * @return
+     *   null if fails to load thumbnail.
+     */
+    public static DB.InsertVideoArg
+    loadInsertVideoArg(String    ytvid,
+                       String    title,
+                       String    author,
+                       int       playtime,
+                       int       volume,
+                       String    bookmarks) {
+        // Loading thumbnail is done.
+        YTSearchHelper.LoadThumbnailReturn tr = loadYtVideoThumbnail(ytvid);
+        if (null == tr.bm)
+            return null;
+
+        DB.InsertVideoArg arg = new DB.InsertVideoArg(ytvid,
+                                                      title,
+                                                      author,
+                                                      playtime,
+                                                      ImageUtils.compressBitmap(tr.bm),
+                                                      volume,
+                                                      bookmarks);
+        tr.bm.recycle();
+        return arg;
+    }
+
     /**
      * This function download thumbnail image through network synchronously.
      */
@@ -65,21 +170,18 @@ public class YTUtils {
                           int       playtime,
                           int       volume,
                           String    bookmarks) {
-        // Loading thumbnail is done.
-        YTSearchHelper.LoadThumbnailReturn tr = loadYtVideoThumbnail(ytvid);
-        if (null == tr.bm)
+        DB.InsertVideoArg arg = loadInsertVideoArg(ytvid, title, author, playtime, volume, bookmarks);
+        if (null == arg)
             return false;
 
         DB.Err err = DB.get().insertVideoToPlaylist(plid,
-                                                    ytvid,
-                                                    title,
-                                                    author,
-                                                    playtime,
-                                                    ImageUtils.compressBitmap(tr.bm),
-                                                    Policy.DEFAULT_VIDEO_VOLUME,
-                                                    bookmarks);
-        tr.bm.recycle();
-
+                                                    arg.ytvid,
+                                                    arg.title,
+                                                    arg.author,
+                                                    arg.playtime,
+                                                    arg.thumbnail,
+                                                    arg.volume,
+                                                    arg.bookmarks);
         if (DB.Err.NO_ERR != err)
             return false;
 